@@ -0,0 +1,239 @@
+package codicefiscale;
+
+import java.nio.CharBuffer;
+import java.util.stream.IntStream;
+
+import codicefiscale.Citizen.Gender;
+
+/**
+ * This class calculates the TIN codes of many citizens at once, from data
+ * laid out in columns, without creating any object per row.
+ *
+ * Each row is described by:
+ * - a surname and a name, either as CharSequence[] columns or as
+ *   offset views over a char[] (name i spans offset[i] to offset[i + 1]);
+ * - a date of birth as days since 1970-01-01 (LocalDate.toEpochDay());
+ * - a gender as the ordinal of Citizen.Gender;
+ * - a place of birth as its packed code (Code.getPackedCode()).
+ *
+ * The TIN of row i is written to the output at index i * 16.
+ */
+public class BatchTINEncoder {
+
+    /**
+     * The amount of rows encoded by each task in parallel mode.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 4096;
+
+    /**
+     * The value of the gender column for a female citizen.
+     */
+    private static final byte GENDER_FEMALE = (byte) Gender.FEMALE.ordinal();
+
+    /**
+     * Days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static final int DAYS_0000_TO_1970 = 719468;
+
+    /**
+     * Days in a 400 years era.
+     */
+    private static final int DAYS_PER_ERA = 146097;
+
+    /**
+     * Calculates TIN codes from CharSequence columns.
+     * @param allSurname The surnames.
+     * @param allName The names.
+     * @param allEpochDay The dates of birth, as epoch days.
+     * @param allGender The genders, as Citizen.Gender ordinals.
+     * @param allPlaceOfBirth The places of birth, as packed codes.
+     * @param output The array to write count * 16 chars to.
+     * @param parallel Whether to split the rows across cores.
+     */
+    public static void encode(
+        CharSequence[] allSurname,
+        CharSequence[] allName,
+        int[] allEpochDay,
+        byte[] allGender,
+        int[] allPlaceOfBirth,
+        char[] output,
+        boolean parallel
+    ) {
+        BatchTINEncoder.encode(
+            allEpochDay.length,
+            parallel,
+            (from, to) -> {
+                for (int i = from; i < to; i++)
+                    BatchTINEncoder.encodeRow(
+                        allSurname[i], 0, allSurname[i].length(),
+                        allName[i], 0, allName[i].length(),
+                        allEpochDay[i], allGender[i], allPlaceOfBirth[i],
+                        output, i * LibTIN.CODE_LENGTH
+                    );
+            }
+        );
+    }
+
+    /**
+     * Calculates TIN codes from offset views over char[] columns.
+     * @param surnameData The chars of all the surnames.
+     * @param surnameOffset The start of each surname, plus the end of the
+     *  last one (count + 1 entries).
+     * @param nameData The chars of all the names.
+     * @param nameOffset The start of each name, plus the end of the last one
+     *  (count + 1 entries).
+     * @param allEpochDay The dates of birth, as epoch days.
+     * @param allGender The genders, as Citizen.Gender ordinals.
+     * @param allPlaceOfBirth The places of birth, as packed codes.
+     * @param output The array to write count * 16 chars to.
+     * @param parallel Whether to split the rows across cores.
+     */
+    public static void encode(
+        char[] surnameData,
+        int[] surnameOffset,
+        char[] nameData,
+        int[] nameOffset,
+        int[] allEpochDay,
+        byte[] allGender,
+        int[] allPlaceOfBirth,
+        char[] output,
+        boolean parallel
+    ) {
+        CharSequence surnameColumn = CharBuffer.wrap(surnameData);
+        CharSequence nameColumn = CharBuffer.wrap(nameData);
+
+        BatchTINEncoder.encode(
+            allEpochDay.length,
+            parallel,
+            (from, to) -> {
+                for (int i = from; i < to; i++)
+                    BatchTINEncoder.encodeRow(
+                        surnameColumn, surnameOffset[i], surnameOffset[i + 1],
+                        nameColumn, nameOffset[i], nameOffset[i + 1],
+                        allEpochDay[i], allGender[i], allPlaceOfBirth[i],
+                        output, i * LibTIN.CODE_LENGTH
+                    );
+            }
+        );
+    }
+
+    /**
+     * Converts TIN codes written as chars to ASCII bytes.
+     * @param codes The chars written by an encode method.
+     * @param output The array to write the bytes to.
+     */
+    public static void toAscii(char[] codes, byte[] output) {
+        for (int i = 0; i < codes.length; i++)
+            output[i] = (byte) codes[i];
+    }
+
+    /**
+     * Runs an encoding over all the rows, sequentially or in chunks spread
+     * across cores. Chunks write to disjoint ranges of the output.
+     * @param count The amount of rows.
+     * @param parallel Whether to split the rows across cores.
+     * @param range The encoding of a range of rows.
+     */
+    private static void encode(int count, boolean parallel, RowRange range) {
+        if (!parallel || count <= PARALLEL_CHUNK_SIZE) {
+            range.encode(0, count);
+            return;
+        }
+
+        int chunkCount =
+            (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        IntStream.range(0, chunkCount).parallel().forEach(
+            chunk -> range.encode(
+                chunk * PARALLEL_CHUNK_SIZE,
+                Math.min(count, (chunk + 1) * PARALLEL_CHUNK_SIZE)
+            )
+        );
+    }
+
+    /**
+     * Writes the TIN code of one row.
+     * @param surname The column holding the surname.
+     * @param surnameStart The index of the first char of the surname.
+     * @param surnameEnd The index after the last char of the surname.
+     * @param name The column holding the name.
+     * @param nameStart The index of the first char of the name.
+     * @param nameEnd The index after the last char of the name.
+     * @param epochDay The date of birth, as epoch day.
+     * @param gender The gender, as Citizen.Gender ordinal.
+     * @param placeOfBirth The place of birth, as packed code.
+     * @param output The array to write the code to.
+     * @param offset The index of the first char of the code.
+     */
+    static void encodeRow(
+        CharSequence surname, int surnameStart, int surnameEnd,
+        CharSequence name, int nameStart, int nameEnd,
+        int epochDay, byte gender, int placeOfBirth,
+        char[] output, int offset
+    ) {
+        if (placeOfBirth < 0 || placeOfBirth >= Code.PACKED_CODE_CAPACITY)
+            throw new RuntimeException(
+                "The place of birth must be a packed code."
+            );
+
+        NameNormalizer.determineTriplet(
+            surname, surnameStart, surnameEnd, output, offset
+        );
+        NameNormalizer.determineNameTriplet(
+            name, nameStart, nameEnd, output, offset + 3
+        );
+
+        // Civil date from epoch day, see "chrono-Compatible Low-Level Date
+        // Algorithms" by H. Hinnant.
+        int shifted = epochDay + DAYS_0000_TO_1970;
+        int era = Math.floorDiv(shifted, DAYS_PER_ERA);
+        int dayOfEra = shifted - era * DAYS_PER_ERA;
+        int yearOfEra = (
+            dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096
+        ) / 365;
+        int dayOfYear = dayOfEra - (
+            365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100
+        );
+        int monthFromMarch = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthFromMarch + 2) / 5 + 1;
+        int month = monthFromMarch < 10
+            ? monthFromMarch + 3
+            : monthFromMarch - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        int yearOfCentury = Math.floorMod(year, 100);
+
+        if (gender == GENDER_FEMALE)
+            day += LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS;
+
+        output[offset + 6] = (char) ('0' + yearOfCentury / 10);
+        output[offset + 7] = (char) ('0' + yearOfCentury % 10);
+        output[offset + 8] = LibTIN.ALL_MONTH_OF_BIRTH_CHAR.charAt(month - 1);
+        output[offset + 9] = (char) ('0' + day / 10);
+        output[offset + 10] = (char) ('0' + day % 10);
+
+        int number = placeOfBirth % 1000;
+        output[offset + 11] = (char) ('A' + placeOfBirth / 1000);
+        output[offset + 12] = (char) ('0' + number / 100);
+        output[offset + 13] = (char) ('0' + number / 10 % 10);
+        output[offset + 14] = (char) ('0' + number % 10);
+
+        int sum = 0;
+        for (int i = 0; i < LibTIN.CONTROL_CHAR_START; i++)
+            sum += LibTIN.determineControlValue(output[offset + i], i);
+        output[offset + LibTIN.CONTROL_CHAR_START] = Character.toUpperCase(
+            LibTIN.determineControlChar(sum)
+        );
+    }
+
+    /**
+     * The encoding of a range of rows.
+     */
+    private interface RowRange {
+
+        /**
+         * Encodes the rows from one index (inclusive) to another (exclusive).
+         * @param from The first row.
+         * @param to The row after the last one.
+         */
+        void encode(int from, int to);
+    }
+}
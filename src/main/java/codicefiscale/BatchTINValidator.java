@@ -0,0 +1,154 @@
+package codicefiscale;
+
+import java.util.Arrays;
+
+/**
+ * This class checks the control char of many TIN codes at once.
+ * The codes are read as ASCII bytes, either row-wise (each code is 16
+ * consecutive bytes) or column-wise (the 16 chars of all codes are stored
+ * as 16 consecutive columns), and the result is a validity bitmap where
+ * bit i of word i / 64 is set when code i has a correct control char.
+ *
+ * Both paths are scalar: each char is looked up in a 256-entry table, and
+ * invalid chars add a sentinel instead of branching. There is no Vector
+ * API path, since the library targets Java 8.
+ */
+public class BatchTINValidator {
+
+    /**
+     * Added to the control sum by any char that is not alphanumeric, so that
+     * the sum of 15 chars stays below it only when all of them are valid.
+     */
+    private static final int INVALID_CONTROL_VALUE = 1 << 16;
+
+    /**
+     * The amount of codes whose sums are kept at once in column-wise mode.
+     */
+    private static final int COLUMN_CHUNK_SIZE = 1024;
+
+    /**
+     * The control value of each byte at an even (0-based) position.
+     */
+    private static final int[] ALL_CONTROL_VALUE_ODD = new int[256];
+
+    /**
+     * The control value of each byte at an odd (0-based) position.
+     */
+    private static final int[] ALL_CONTROL_VALUE_EVEN = new int[256];
+
+    /**
+     * The value of each byte as a control char, or -1.
+     */
+    private static final int[] ALL_CONTROL_CHAR_VALUE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int odd = LibTIN.determineControlValue((char) i, 0);
+            int even = LibTIN.determineControlValue((char) i, 1);
+            ALL_CONTROL_VALUE_ODD[i] = odd >= 0 ? odd : INVALID_CONTROL_VALUE;
+            ALL_CONTROL_VALUE_EVEN[i] =
+                even >= 0 ? even : INVALID_CONTROL_VALUE;
+
+            char letter = Character.toUpperCase((char) i);
+            ALL_CONTROL_CHAR_VALUE[i] = letter >= 'A' && letter <= 'Z'
+                ? letter - 'A'
+                : -1;
+        }
+    }
+
+    /**
+     * Checks codes stored row-wise.
+     * @param data The ASCII bytes of the codes.
+     * @param offset The index of the first byte of the first code.
+     * @param stride The distance in bytes between two codes, at least 16
+     *  (e.g. 17 for newline separated codes).
+     * @param count The amount of codes.
+     * @return The validity bitmap of the codes.
+     */
+    public static long[] validateRows(
+        byte[] data, int offset, int stride, int count
+    ) {
+        if (stride < LibTIN.CODE_LENGTH)
+            throw new RuntimeException(
+                "The stride must be at least the length of a TIN."
+            );
+
+        long[] bitmap = BatchTINValidator.newBitmap(count);
+
+        for (int i = 0; i < count; i++) {
+            int start = offset + i * stride;
+            int sum = 0;
+
+            for (int j = 0; j < LibTIN.CONTROL_CHAR_START; j += 2)
+                sum += ALL_CONTROL_VALUE_ODD[data[start + j] & 0xFF];
+            for (int j = 1; j < LibTIN.CONTROL_CHAR_START; j += 2)
+                sum += ALL_CONTROL_VALUE_EVEN[data[start + j] & 0xFF];
+
+            int controlCharValue = ALL_CONTROL_CHAR_VALUE[
+                data[start + LibTIN.CONTROL_CHAR_START] & 0xFF
+            ];
+            if (sum < INVALID_CONTROL_VALUE && controlCharValue == sum % 26)
+                bitmap[i >>> 6] |= 1L << i;
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Checks codes stored column-wise: char j of code i is at index
+     * offset + j * count + i.
+     * @param data The ASCII bytes of the codes.
+     * @param offset The index of the first byte of the first column.
+     * @param count The amount of codes.
+     * @return The validity bitmap of the codes.
+     */
+    public static long[] validateColumns(byte[] data, int offset, int count) {
+        long[] bitmap = BatchTINValidator.newBitmap(count);
+        int[] allSum = new int[Math.min(count, COLUMN_CHUNK_SIZE)];
+
+        for (int chunk = 0; chunk < count; chunk += COLUMN_CHUNK_SIZE) {
+            int chunkSize = Math.min(COLUMN_CHUNK_SIZE, count - chunk);
+            Arrays.fill(allSum, 0, chunkSize, 0);
+
+            for (int j = 0; j < LibTIN.CONTROL_CHAR_START; j++) {
+                int[] allControlValue = j % 2 == 1
+                    ? ALL_CONTROL_VALUE_EVEN
+                    : ALL_CONTROL_VALUE_ODD;
+                int start = offset + j * count + chunk;
+
+                for (int i = 0; i < chunkSize; i++)
+                    allSum[i] += allControlValue[data[start + i] & 0xFF];
+            }
+
+            int start = offset + LibTIN.CONTROL_CHAR_START * count + chunk;
+            for (int i = 0; i < chunkSize; i++) {
+                int sum = allSum[i];
+                int controlCharValue =
+                    ALL_CONTROL_CHAR_VALUE[data[start + i] & 0xFF];
+                if (sum < INVALID_CONTROL_VALUE && controlCharValue == sum % 26)
+                    bitmap[(chunk + i) >>> 6] |= 1L << (chunk + i);
+            }
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Determines if a code is valid according to a validity bitmap.
+     * @param bitmap The bitmap returned by a validate method.
+     * @param index The index of the code.
+     * @return True if the code has a correct control char.
+     */
+    public static boolean isValid(long[] bitmap, int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Creates an empty bitmap for an amount of codes.
+     * @param count The amount of codes.
+     * @return A bitmap with one bit per code.
+     */
+    private static long[] newBitmap(int count) {
+        return new long[(count + 63) >>> 6];
+    }
+}
@@ -0,0 +1,95 @@
+package codicefiscale;
+
+import codicefiscale.TINBlocker.BlockingKey;
+
+/**
+ * This class is a block of candidate records emitted by a TINBlocker: the
+ * records that share the value of a blocking key, and so are worth
+ * comparing with each other.
+ *
+ * Instances are immutable and can be shared across threads.
+ */
+public class CandidateBlock {
+
+    /**
+     * The blocking key the records share.
+     */
+    private final BlockingKey blockingKey;
+
+    /**
+     * The value of the blocking key the records share.
+     */
+    private final String key;
+
+    /**
+     * The ids of the records, in ascending order.
+     */
+    private final int[] allRecordId;
+
+    /**
+     * Creates an instance of a block.
+     * @param blockingKey The blocking key the records share.
+     * @param key The value of the blocking key.
+     * @param allRecordId The ids of the records, in ascending order.
+     */
+    CandidateBlock(BlockingKey blockingKey, String key, int[] allRecordId) {
+        this.blockingKey = blockingKey;
+        this.key = key;
+        this.allRecordId = allRecordId;
+    }
+
+    /**
+     * Returns the blocking key the records share.
+     * @return The blocking key.
+     */
+    public BlockingKey getBlockingKey() {
+        return this.blockingKey;
+    }
+
+    /**
+     * Returns the value of the blocking key the records share, made of the
+     * TIN segments of the key, such as "RSS80A01" for a surname triplet and
+     * a date of birth. The gender is not part of the date of birth.
+     * @return The value of the blocking key.
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Returns the amount of records in the block.
+     * @return The amount of records, at least 2.
+     */
+    public int size() {
+        return this.allRecordId.length;
+    }
+
+    /**
+     * Returns the id of a record of the block.
+     * @param index The index of the record, from 0 to size() - 1.
+     * @return The id of the record.
+     */
+    public int getRecordId(int index) {
+        return this.allRecordId[index];
+    }
+
+    /**
+     * Returns the ids of the records of the block.
+     * @return A copy of the ids, in ascending order.
+     */
+    public int[] getRecordIds() {
+        return this.allRecordId.clone();
+    }
+
+    /**
+     * Gives a string representation of a block.
+     */
+    public String toString() {
+        return String.format(
+            "%s %s (%d records)",
+            this.blockingKey,
+            this.key,
+            this.allRecordId.length
+        );
+    }
+}
@@ -1,40 +1,80 @@
 package codicefiscale;
 
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
 /**
  * This class holds information about the personal data of a citizen.
+ * Citizens are immutable and can be shared across threads.
  */
 public class Citizen {
 
     /**
      * The name of the citizen.
      */
-    private String name;
+    private final String name;
 
     /**
      * The surname of the citizen.
      */
-    private String surname;
+    private final String surname;
 
     /**
      * The date of birth of the citizen.
      */
-    private Date dateOfBirth;
+    private final LocalDate dateOfBirth;
+
+    /**
+     * The instant of birth, in milliseconds since 1970-01-01T00:00Z.
+     */
+    private final long dateOfBirthTime;
 
     /**
      * The gender of the citizen.
      */
-    private Gender gender;
+    private final Gender gender;
 
     /**
      * The place of birth of the citizen.
      */
-    private PlaceOfBirth placeOfBirth;
+    private final PlaceOfBirth placeOfBirth;
+
+    /**
+     * The hash code, computed once.
+     */
+    private final int hashCode;
+
+    /**
+     * Creates an instance of a citizen object.
+     * @param name The name of the citizen.
+     * @param surname The surname of the citizen.
+     * @param dateOfBirth The date of birth of the citizen.
+     * @param gender The gender of the citizen.
+     * @param placeOfBirth The place of birth of the citizen.
+     */
+    public Citizen(
+        String name,
+        String surname,
+        LocalDate dateOfBirth,
+        Gender gender,
+        PlaceOfBirth placeOfBirth
+    ) {
+        this(
+            name,
+            surname,
+            dateOfBirth,
+            dateOfBirth.atStartOfDay(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli(),
+            gender,
+            placeOfBirth
+        );
+    }
 
     /**
      * Creates an instance of a citizen object.
+     * The date of birth is read in the default time zone, and the instant
+     * is kept for getDateOfBirth().
      * @param name The name of the citizen.
      * @param surname The surname of the citizen.
      * @param dateOfBirth The date of birth of the citizen.
@@ -47,12 +87,48 @@ public class Citizen {
         Date dateOfBirth,
         Gender gender,
         PlaceOfBirth placeOfBirth
+    ) {
+        this(
+            name,
+            surname,
+            dateOfBirth.toInstant().atZone(ZoneId.systemDefault())
+                .toLocalDate(),
+            dateOfBirth.getTime(),
+            gender,
+            placeOfBirth
+        );
+    }
+
+    /**
+     * Creates an instance of a citizen object.
+     * @param name The name of the citizen.
+     * @param surname The surname of the citizen.
+     * @param dateOfBirth The date of birth of the citizen.
+     * @param dateOfBirthTime The instant of birth, in milliseconds.
+     * @param gender The gender of the citizen.
+     * @param placeOfBirth The place of birth of the citizen.
+     */
+    private Citizen(
+        String name,
+        String surname,
+        LocalDate dateOfBirth,
+        long dateOfBirthTime,
+        Gender gender,
+        PlaceOfBirth placeOfBirth
     ) {
         this.name = name;
         this.surname = surname;
         this.dateOfBirth = dateOfBirth;
+        this.dateOfBirthTime = dateOfBirthTime;
         this.gender = gender;
         this.placeOfBirth = placeOfBirth;
+
+        int hashCode = name.hashCode();
+        hashCode = 31 * hashCode + surname.hashCode();
+        hashCode = 31 * hashCode + dateOfBirth.hashCode();
+        hashCode = 31 * hashCode + gender.ordinal();
+        hashCode = 31 * hashCode + placeOfBirth.hashCode();
+        this.hashCode = hashCode;
     }
 
     /**
@@ -72,10 +148,20 @@ public class Citizen {
     }
 
     /**
-     * Returns the date of birth of the citizen.
+     * Returns the date of birth of the citizen: the Date it was created
+     * with, or the start of the day in the default time zone if it was
+     * created with a LocalDate. A new Date is returned at each call.
      * @return The date of birth of the citizen.
      */
     public Date getDateOfBirth() {
+        return new Date(this.dateOfBirthTime);
+    }
+
+    /**
+     * Returns the date of birth of the citizen.
+     * @return The date of birth of the citizen.
+     */
+    public LocalDate getLocalDateOfBirth() {
         return this.dateOfBirth;
     }
 
@@ -100,26 +186,30 @@ public class Citizen {
      */
     public String toString() {
         return String.format(
-            "%s %s (%s), %s %s",
+            "%s %s (%s), %d/%d/%d %s",
             this.name,
             this.surname,
             this.gender.equals(Gender.FEMALE) ? "F" : "M",
-            new SimpleDateFormat("d/M/Y").format(this.dateOfBirth),
+            this.dateOfBirth.getDayOfMonth(),
+            this.dateOfBirth.getMonthValue(),
+            this.dateOfBirth.getYear(),
             this.placeOfBirth.toString()
         );
     }
 
     /**
      * Determines if two instances of Citizen are equal.
+     * Dates of birth are compared as days, not as instants.
      */
     public boolean equals(Object other) {
         if (other instanceof Citizen) {
             Citizen citizen = (Citizen) other;
             return (
-                this.name.equals(citizen.getName())
+                this.hashCode == citizen.hashCode
+                && this.name.equals(citizen.getName())
                 && this.surname.equals(citizen.getSurname())
                 && this.gender.equals(citizen.getGender())
-                && this.dateOfBirth.equals(citizen.getDateOfBirth())
+                && this.dateOfBirth.equals(citizen.getLocalDateOfBirth())
                 && this.placeOfBirth.equals(citizen.getPlaceOfBirth())
             );
         } else {
@@ -127,6 +217,13 @@ public class Citizen {
         }
     }
 
+    /**
+     * Returns a hash code consistent with equals.
+     */
+    public int hashCode() {
+        return this.hashCode;
+    }
+
     /**
      * An enumeration for the gender of an Italian citizen.
      * Yep, you gotta be either a male or a female for the government
@@ -136,4 +233,4 @@ public class Citizen {
         MALE,
         FEMALE,
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package codicefiscale;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * This class represents a normal Italian city.
  */
@@ -8,12 +11,18 @@ public class City extends PlaceOfBirth {
     /**
      * The original city name in Italian.
      */
-    private String name;
+    private final String name;
 
     /**
      * The province of birth.
      */
-    protected String province;
+    protected final String province;
+
+    /**
+     * The interned province strings, shared by all the cities.
+     */
+    private static final ConcurrentMap<String, String> ALL_PROVINCE =
+        new ConcurrentHashMap<>();
     
     /**
      * Creates an instance of a city.
@@ -22,17 +31,45 @@ public class City extends PlaceOfBirth {
      * @param province The province of the city.
      */
     public City(String name, Code code, String province) {
+        super(code);
         this.name = name;
-        this.code = code;
 
         if (province.length() == 2)
-            this.province = province;
+            this.province = City.internProvince(province);
         else
             throw new RuntimeException(
                 "A province of birth must be a two character string."
             );
     }
 
+    /**
+     * Creates an instance of a city without throwing.
+     * @param name The name of the city.
+     * @param code The ISTAT code.
+     * @param province The province of the city.
+     * @return The city, or INVALID_PROVINCE.
+     */
+    public static ParseResult<City> tryCreate(
+        String name, Code code, String province
+    ) {
+        if (province.length() != 2)
+            return ParseResult.failure(
+                ParseError.INVALID_PROVINCE, ParseResult.NO_POSITION
+            );
+
+        return ParseResult.success(new City(name, code, province));
+    }
+
+    /**
+     * Returns the shared instance of a province string.
+     * @param province The province string.
+     * @return The interned province string.
+     */
+    static String internProvince(String province) {
+        String interned = City.ALL_PROVINCE.putIfAbsent(province, province);
+        return interned == null ? province : interned;
+    }
+
     /**
      * Returns the original city name.
      * @return The original city name in Italian.
@@ -12,7 +12,7 @@ public class CityBorder extends City {
      * Holds the info about a foreign name for the city.
      * It's used especially for municipalities at the border.
      */
-    private String cityNameForeign;
+    private final String cityNameForeign;
 
     /**
      * Creates an instance of a city of fronteer.
@@ -2,18 +2,24 @@ package codicefiscale;
 
 /**
  * This class represents a name of a city in a foreign language.
+ * Instances are immutable and can be shared across threads.
  */
 public class CityNameForeign {
 
     /**
      * The actual foreign name for the city.
      */
-    private String cityNameForeign;
+    private final String cityNameForeign;
 
     /**
      * The foreign language of the name.
      */
-    private ForeignLanguage foreignLanguage;
+    private final ForeignLanguage foreignLanguage;
+
+    /**
+     * The hash code, computed once.
+     */
+    private final int hashCode;
 
     /**
      * Creates an instance of a foreign language city name.
@@ -23,6 +29,7 @@ public class CityNameForeign {
     public CityNameForeign(String cityName, ForeignLanguage language) {
         this.cityNameForeign = cityName;
         this.foreignLanguage = language;
+        this.hashCode = 31 * cityName.hashCode() + language.ordinal();
     }
 
     /**
@@ -66,6 +73,13 @@ public class CityNameForeign {
             return false;
     }
 
+    /**
+     * Returns a hash code consistent with equals.
+     */
+    public int hashCode() {
+        return this.hashCode;
+    }
+
     /**
      * This enum lists all the possible foreign language that a CityNameForeign
      * can have.
@@ -1,22 +1,49 @@
 package codicefiscale;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * This class represents a code for a PlaceOfBirth.
- * This code is generated for each municipality and foreign country 
+ * This code is generated for each municipality and foreign country
  * by the ISTAT (Italian Institute of Statistics).
+ *
+ * Codes in the canonical form (one uppercase letter followed by three digits)
+ * are backed by a packed int in the range [0, PACKED_CODE_CAPACITY), so that
+ * comparing them is an int comparison. Use {@link #of(String)} to obtain the
+ * shared, interned instance of a code. Only canonical codes are interned,
+ * so the interned instances never take more than PACKED_CODE_CAPACITY
+ * slots, whatever the input.
+ *
+ * Instances are immutable and can be shared across threads.
  */
 public class Code {
 
     /**
      * The actual 4 char code of the municipality.
      */
-    private String code;
+    private final String code;
+
+    /**
+     * The packed int version of the code (letter index * 1000 + number), or
+     * NOT_PACKED when the code is not in the canonical form.
+     */
+    private final int packedCode;
 
     /**
      * The maximum length that a code can have.
      */
     private static final short CODE_LENGTH = 4;
-    
+
+    /**
+     * The number of distinct packed codes, one per letter and number.
+     */
+    public static final int PACKED_CODE_CAPACITY = 26 * 1000;
+
+    /**
+     * The packed value of a code that is not in the canonical form.
+     */
+    public static final int NOT_PACKED = -1;
+
     /**
      * The message format of the error.
      */
@@ -24,17 +51,134 @@ public class Code {
         "The code %s is not a valid TIN code."
     );
 
+    /**
+     * The interned instances of the canonical codes, indexed by packed code.
+     */
+    private static final AtomicReferenceArray<Code> ALL_CODE_PACKED =
+        new AtomicReferenceArray<>(Code.PACKED_CODE_CAPACITY);
+
     /**
      * Creates an instance of an ISTAT code.
+     * Prefer {@link #of(String)}, which returns a shared instance.
      * @param code The actual ISTAT code.
      */
     public Code(String code) {
-        if (code.length() == Code.CODE_LENGTH)
+        if (code.length() == Code.CODE_LENGTH) {
             this.code = code;
-        else
+            this.packedCode = Code.pack(code, 0);
+        } else
+            throw new RuntimeException(
+                String.format(Code.ERROR_MESSAGE_FORMAT, code)
+            );
+    }
+
+    /**
+     * Returns the interned instance of an ISTAT code.
+     * @param code The actual ISTAT code.
+     * @return The shared Code instance for the given string, or a new
+     *  instance if the code is not canonical.
+     */
+    public static Code of(String code) {
+        if (code.length() != Code.CODE_LENGTH)
             throw new RuntimeException(
                 String.format(Code.ERROR_MESSAGE_FORMAT, code)
             );
+
+        int packedCode = Code.pack(code, 0);
+        if (packedCode == Code.NOT_PACKED)
+            return new Code(code);
+
+        Code interned = Code.ALL_CODE_PACKED.get(packedCode);
+        if (interned == null) {
+            Code.ALL_CODE_PACKED.compareAndSet(
+                packedCode, null, new Code(code)
+            );
+            interned = Code.ALL_CODE_PACKED.get(packedCode);
+        }
+
+        return interned;
+    }
+
+    /**
+     * Parses an ISTAT code without throwing. The code must be a letter
+     * followed by three digits, in any case, and the digits can be the
+     * letters used for omocodia, as in the place of birth of a TIN.
+     * @param code The actual ISTAT code.
+     * @return The interned canonical Code, or the error and the position of
+     *  the first invalid char.
+     */
+    public static ParseResult<Code> tryParse(String code) {
+        if (code.length() != Code.CODE_LENGTH)
+            return ParseResult.failure(
+                ParseError.INVALID_LENGTH, ParseResult.NO_POSITION
+            );
+
+        char letter = Character.toUpperCase(code.charAt(0));
+        if (letter < 'A' || letter > 'Z')
+            return ParseResult.failure(ParseError.INVALID_CHAR, 0);
+
+        int number = 0;
+        for (int i = 1; i < Code.CODE_LENGTH; i++) {
+            int digit = LibTIN.determineDigit(code.charAt(i));
+            if (digit < 0)
+                return ParseResult.failure(ParseError.INVALID_CHAR, i);
+            number = number * 10 + digit;
+        }
+
+        return ParseResult.success(
+            Code.ofPacked((letter - 'A') * 1000 + number)
+        );
+    }
+
+    /**
+     * Returns the interned instance of a canonical code from its packed int.
+     * @param packedCode The packed code, as returned by getPackedCode().
+     * @return The shared Code instance for the given packed code.
+     */
+    public static Code ofPacked(int packedCode) {
+        if (packedCode < 0 || packedCode >= Code.PACKED_CODE_CAPACITY)
+            throw new RuntimeException(
+                String.format(Code.ERROR_MESSAGE_FORMAT, packedCode)
+            );
+
+        return Code.of(Code.unpack(packedCode));
+    }
+
+    /**
+     * Packs the four chars of a code starting at the given offset.
+     * @param code The sequence containing the code.
+     * @param offset The index of the first char of the code.
+     * @return The packed code, or NOT_PACKED if it is not canonical.
+     */
+    static int pack(CharSequence code, int offset) {
+        char letter = code.charAt(offset);
+        if (letter < 'A' || letter > 'Z')
+            return Code.NOT_PACKED;
+
+        int number = 0;
+        for (int i = offset + 1; i < offset + Code.CODE_LENGTH; i++) {
+            char digit = code.charAt(i);
+            if (digit < '0' || digit > '9')
+                return Code.NOT_PACKED;
+            number = number * 10 + (digit - '0');
+        }
+
+        return (letter - 'A') * 1000 + number;
+    }
+
+    /**
+     * Turns a packed code back into its string form.
+     * @param packedCode The packed code.
+     * @return The 4 char code.
+     */
+    private static String unpack(int packedCode) {
+        int number = packedCode % 1000;
+        return new String(new char[] {
+            (char) ('A' + packedCode / 1000),
+            (char) ('0' + number / 100),
+            (char) ('0' + number / 10 % 10),
+            (char) ('0' + number % 10),
+        });
     }
 
     /**
@@ -44,6 +188,14 @@ public class Code {
         return this.code;
     }
 
+    /**
+     * Returns the packed int version of this Code.
+     * @return A value in [0, PACKED_CODE_CAPACITY), or NOT_PACKED.
+     */
+    public int getPackedCode() {
+        return this.packedCode;
+    }
+
     /**
      * A string representation of a Code.
      */
@@ -55,9 +207,27 @@ public class Code {
      * Determines if two instances of Code are equal.
      */
     public boolean equals(Object other) {
-        if (other instanceof Code)
-            return this.code.equals(((Code) other).getCode());
-        else
+        if (this == other)
+            return true;
+        else if (other instanceof Code) {
+            Code otherCode = (Code) other;
+            if (this.packedCode != otherCode.packedCode)
+                return false;
+            else
+                return (
+                    this.packedCode != Code.NOT_PACKED
+                    || this.code.equals(otherCode.getCode())
+                );
+        } else
             return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a hash code consistent with equals.
+     */
+    public int hashCode() {
+        return this.packedCode != Code.NOT_PACKED
+            ? this.packedCode
+            : this.code.hashCode();
+    }
+}
@@ -13,7 +13,7 @@ public class Country extends PlaceOfBirth {
     /**
      * The name of the foreign country.
      */
-    private String name;
+    private final String name;
 
     /**
      * Creates an instance of a country object.
@@ -21,8 +21,8 @@ public class Country extends PlaceOfBirth {
      * @param code The ISTAT code.
      */
     public Country(String name, Code code) {
+        super(code);
         this.name = name;
-        this.code = code;
     }
 
     /**
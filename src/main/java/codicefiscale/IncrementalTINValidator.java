@@ -0,0 +1,325 @@
+package codicefiscale;
+
+/**
+ * This class validates a TIN code one char at a time, as it is being typed.
+ * Appending or deleting a char updates the state in constant time: the
+ * running control char sum, the structural validity of each segment and,
+ * once 15 chars are in, the expected control char.
+ *
+ * Instances are not thread-safe, use one per input field.
+ */
+public class IncrementalTINValidator {
+
+    /**
+     * Position state of a consonant in a triplet, or of any other char.
+     */
+    private static final byte STATE_CONSONANT = 0;
+
+    /**
+     * Position state of a vowel in a triplet.
+     */
+    private static final byte STATE_VOWEL = 1;
+
+    /**
+     * Position state of a filler X in a triplet.
+     */
+    private static final byte STATE_FILLER = 2;
+
+    /**
+     * The uppercase chars typed so far.
+     */
+    private final char[] allChar = new char[LibTIN.CODE_LENGTH];
+
+    /**
+     * The control char sum of the first i chars, at index i.
+     */
+    private final int[] allSum = new int[LibTIN.CODE_LENGTH + 1];
+
+    /**
+     * Whether the char at each position is valid.
+     */
+    private final boolean[] allValid = new boolean[LibTIN.CODE_LENGTH];
+
+    /**
+     * The triplet state of the char at each position.
+     */
+    private final byte[] allState = new byte[LibTIN.CODE_LENGTH];
+
+    /**
+     * The amount of invalid chars in each segment, by segment ordinal.
+     */
+    private final int[] allSegmentErrorCount = new int[Segment.values().length];
+
+    /**
+     * The amount of chars typed so far.
+     */
+    private int length;
+
+    /**
+     * The position of the first invalid char, or -1.
+     */
+    private int firstErrorPosition = -1;
+
+    /**
+     * Appends a char to the code being validated.
+     * @param character The typed char, in any case.
+     * @return True if the code is still valid after the char.
+     * @throws RuntimeException When the code is already 16 chars long.
+     */
+    public boolean append(char character) {
+        if (this.length == LibTIN.CODE_LENGTH)
+            throw new RuntimeException(
+                "A TIN code cannot be longer than 16 characters."
+            );
+
+        int position = this.length;
+        character = Character.toUpperCase(character);
+        this.allChar[position] = character;
+        this.allState[position] = STATE_CONSONANT;
+
+        int controlValue = LibTIN.determineControlValue(character, position);
+        this.allSum[position + 1] = this.allSum[position] + Math.max(
+            controlValue, 0
+        );
+
+        boolean valid = controlValue >= 0 && this.isValidAt(position);
+        this.allValid[position] = valid;
+        this.length++;
+
+        if (!valid) {
+            this.allSegmentErrorCount[Segment.at(position).ordinal()]++;
+            if (this.firstErrorPosition == -1)
+                this.firstErrorPosition = position;
+        }
+
+        return this.firstErrorPosition == -1;
+    }
+
+    /**
+     * Deletes the last char of the code being validated, if any.
+     */
+    public void deleteLast() {
+        if (this.length == 0)
+            return;
+
+        this.length--;
+        int position = this.length;
+
+        if (!this.allValid[position]) {
+            this.allSegmentErrorCount[Segment.at(position).ordinal()]--;
+            if (this.firstErrorPosition == position)
+                this.firstErrorPosition = -1;
+        }
+    }
+
+    /**
+     * Deletes all the chars of the code being validated.
+     */
+    public void reset() {
+        while (this.length > 0)
+            this.deleteLast();
+    }
+
+    /**
+     * Returns the amount of chars typed so far.
+     * @return The length of the code being validated.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Determines whether the chars typed so far can be the beginning of a
+     * valid TIN code.
+     * @return True if no invalid char has been typed.
+     */
+    public boolean isValidSoFar() {
+        return this.firstErrorPosition == -1;
+    }
+
+    /**
+     * Determines whether a complete and valid TIN code has been typed.
+     * @return True if 16 chars are in and all of them are valid.
+     */
+    public boolean isValid() {
+        return this.length == LibTIN.CODE_LENGTH && this.isValidSoFar();
+    }
+
+    /**
+     * Determines whether the chars typed so far in a segment are valid.
+     * @param segment The segment of the TIN code.
+     * @return True if the segment has no invalid char so far.
+     */
+    public boolean isValidSoFar(Segment segment) {
+        return this.allSegmentErrorCount[segment.ordinal()] == 0;
+    }
+
+    /**
+     * Returns the position of the first invalid char.
+     * @return The 0-based position of the first invalid char, or -1.
+     */
+    public int getFirstErrorPosition() {
+        return this.firstErrorPosition;
+    }
+
+    /**
+     * Determines whether the expected control char is known.
+     * @return True once at least 15 chars have been typed.
+     */
+    public boolean hasExpectedControlChar() {
+        return this.length >= LibTIN.CONTROL_CHAR_START;
+    }
+
+    /**
+     * Returns the control char the code must end with.
+     * @return The uppercase expected control char.
+     * @throws RuntimeException When fewer than 15 chars have been typed.
+     */
+    public char getExpectedControlChar() {
+        if (!this.hasExpectedControlChar())
+            throw new RuntimeException(
+                "The control char needs the first 15 characters."
+            );
+
+        return Character.toUpperCase(LibTIN.determineControlChar(
+            this.allSum[LibTIN.CONTROL_CHAR_START]
+        ));
+    }
+
+    /**
+     * Returns the chars typed so far.
+     * @return The uppercase code being validated.
+     */
+    public String toString() {
+        return new String(this.allChar, 0, this.length);
+    }
+
+    /**
+     * Determines whether the char just stored at a position is valid, given
+     * the chars before it. Also records the triplet state of the position.
+     * @param position The position of the char.
+     * @return True if the char is valid at that position.
+     */
+    private boolean isValidAt(int position) {
+        char character = this.allChar[position];
+
+        switch (Segment.at(position)) {
+            case SURNAME:
+            case NAME:
+                return this.isValidTripletChar(position, character);
+            case YEAR_OF_BIRTH:
+                return LibTIN.determineDigit(character) >= 0;
+            case MONTH_OF_BIRTH:
+                return LibTIN.ALL_MONTH_OF_BIRTH_CHAR.indexOf(character) >= 0;
+            case DAY_OF_BIRTH_GENDER:
+                return this.isValidDayChar(position, character);
+            case PLACE_OF_BIRTH:
+                if (position == LibTIN.PLACE_OF_BIRTH_START)
+                    return character >= 'A' && character <= 'Z';
+                else
+                    return LibTIN.determineDigit(character) >= 0;
+            default:
+                return character == this.getExpectedControlChar();
+        }
+    }
+
+    /**
+     * Determines whether a char is valid in a triplet. A triplet is made of
+     * consonants, then vowels, then filler X chars.
+     * @param position The position of the char.
+     * @param character The uppercase char.
+     * @return True if the char is valid at that position.
+     */
+    private boolean isValidTripletChar(int position, char character) {
+        if (character < 'A' || character > 'Z')
+            return false;
+
+        byte statePrevious = position % 3 == 0
+            ? STATE_CONSONANT
+            : this.allState[position - 1];
+        boolean isVowel = "AEIOU".indexOf(character) >= 0;
+
+        if (isVowel) {
+            this.allState[position] = STATE_VOWEL;
+            return statePrevious != STATE_FILLER;
+        } else if (statePrevious == STATE_CONSONANT)
+            return true;
+        else {
+            this.allState[position] = STATE_FILLER;
+            return character == 'X';
+        }
+    }
+
+    /**
+     * Determines whether a char is valid in the day of birth gender pair.
+     * @param position The position of the char.
+     * @param character The uppercase char.
+     * @return True if the char is valid at that position.
+     */
+    private boolean isValidDayChar(int position, char character) {
+        int digit = LibTIN.determineDigit(character);
+
+        if (position == LibTIN.DAY_OF_BIRTH_GENDER_START)
+            return digit >= 0 && digit <= 7;
+
+        int tens = LibTIN.determineDigit(
+            this.allChar[LibTIN.DAY_OF_BIRTH_GENDER_START]
+        );
+        if (digit < 0 || tens < 0)
+            return digit >= 0;
+
+        int day = (tens * 10 + digit) % 40;
+        return day >= 1 && day <= 31;
+    }
+
+    /**
+     * This enum lists the segments of a TIN code.
+     */
+    public enum Segment {
+        SURNAME(LibTIN.SURNAME_START),
+        NAME(LibTIN.NAME_START),
+        YEAR_OF_BIRTH(LibTIN.YEAR_OF_BIRTH_START),
+        MONTH_OF_BIRTH(LibTIN.MONTH_OF_BIRTH_START),
+        DAY_OF_BIRTH_GENDER(LibTIN.DAY_OF_BIRTH_GENDER_START),
+        PLACE_OF_BIRTH(LibTIN.PLACE_OF_BIRTH_START),
+        CONTROL(LibTIN.CONTROL_CHAR_START);
+
+        /**
+         * The segment of each position of a TIN code.
+         */
+        private static final Segment[] ALL_SEGMENT_BY_POSITION =
+            new Segment[LibTIN.CODE_LENGTH];
+
+        static {
+            for (Segment segment : Segment.values())
+                for (int i = segment.start; i < LibTIN.CODE_LENGTH; i++)
+                    ALL_SEGMENT_BY_POSITION[i] = segment;
+        }
+
+        /**
+         * The position of the first char of the segment.
+         */
+        private final int start;
+
+        Segment(int start) {
+            this.start = start;
+        }
+
+        /**
+         * Returns the position of the first char of the segment.
+         * @return The 0-based start position.
+         */
+        public int getStart() {
+            return this.start;
+        }
+
+        /**
+         * Returns the segment a position belongs to.
+         * @param position The 0-based position in a TIN code.
+         * @return The segment.
+         */
+        public static Segment at(int position) {
+            return ALL_SEGMENT_BY_POSITION[position];
+        }
+    }
+}
@@ -3,12 +3,12 @@ package codicefiscale;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -24,27 +24,70 @@ import codicefiscale.Citizen.Gender;
 public class LibTIN {
 
     /**
-     * The set of char to consider as vowels.
+     * The actual length of any Italian TIN.
      */
-    private static final String ALL_VOWEL = "aeiou";
-    
+    static final int CODE_LENGTH = 16;
+
     /**
      * The chars corresponding to each month of birth.
      * e.g. Jan is index 0 (A), Feb is index 1 (B), etc...
      */
-    private static final String ALL_MONTH_OF_BIRTH_CHAR = "ABCDEHLMNPRST";
+    static final String ALL_MONTH_OF_BIRTH_CHAR = "ABCDEHLMPRST";
+
+    /**
+     * The chars that can replace the digits of a TIN in case of omocodia.
+     * e.g. 0 is index 0 (L), 1 is index 1 (M), etc...
+     */
+    static final String ALL_OMOCODE_CHAR = "LMNPQRSTUV";
 
     /**
      * Amount to be added to the day of birth gender pair when gender is F.
      */
-    private static final int DAY_OF_BIRTH_FEMALE_SURPLUS = 40;
+    static final int DAY_OF_BIRTH_FEMALE_SURPLUS = 40;
 
     /**
-     * String containing the digits.
-     * Used for calculating the control char.
+     * The index of the surname triplet in a TIN code.
      */
-    private static final String DIGITS_EVEN_INDEX = "0123456789";
-    
+    static final int SURNAME_START = 0;
+
+    /**
+     * The index of the name triplet in a TIN code.
+     */
+    static final int NAME_START = 3;
+
+    /**
+     * The index of the year of birth pair in a TIN code.
+     */
+    static final int YEAR_OF_BIRTH_START = 6;
+
+    /**
+     * The index of the month of birth char in a TIN code.
+     */
+    static final int MONTH_OF_BIRTH_START = 8;
+
+    /**
+     * The index of the day of birth gender pair in a TIN code.
+     */
+    static final int DAY_OF_BIRTH_GENDER_START = 9;
+
+    /**
+     * The index of the place of birth code in a TIN code.
+     */
+    static final int PLACE_OF_BIRTH_START = 11;
+
+    /**
+     * The index of the control char in a TIN code.
+     */
+    static final int CONTROL_CHAR_START = 15;
+
+    /**
+     * The positions of the digits of a TIN, which omocodia can replace with
+     * a letter.
+     */
+    static final int[] ALL_DIGIT_POSITION = new int[] {
+        6, 7, 9, 10, 12, 13, 14,
+    };
+
     /**
      * String containing the alphabet.
      * Used for calculating the control char.
@@ -83,8 +126,22 @@ public class LibTIN {
      * (first) and foreign language (second).
      * The foreign language could be any (French, German, etc...).
      */
-    private static final String REGEX_FOREIGN_LANGUAGE_NAME_SEPARATOR =
-        " \\* . ";
+    private static final String FOREIGN_LANGUAGE_NAME_SEPARATOR = " * ";
+
+    /**
+     * This is used to separate the columns of the place of birth list.
+     */
+    private static final char CSV_SEPARATOR = ',';
+
+    /**
+     * Returns the default list of place of birth included in this library.
+     * The list is loaded once and shared; when building a native image it is
+     * loaded at image build time.
+     * @return An unmodifiable list of place of birth.
+     */
+    public static List<PlaceOfBirth> getDefaultPlaceOfBirthList() {
+        return DefaultPlaceOfBirthListHolder.ALL_PLACE_OF_BIRTH;
+    }
 
     /**
      * Loads the default list of place of birth included in this library into
@@ -98,30 +155,37 @@ public class LibTIN {
             new InputStreamReader(
                 LibTIN.class.getClassLoader().getResourceAsStream(
                     LibTIN.FILENAME_DEFAULT_PLACE_OF_BIRTH_LIST
-                )
+                ),
+                StandardCharsets.UTF_8
             )
         );
         List<PlaceOfBirth> placeOfBirthList = new ArrayList<>();
         String row;
         while ((row = csvReader.readLine()) != null) {
-            String[] data = row.split(",");
-            String name = data[0];
-            String province = data[1];
-            Code code = new Code(data[2]);
-
-            if (name.matches(LibTIN.REGEX_FOREIGN_LANGUAGE_NAME_SEPARATOR)) {
-                String[] allName = name.split(
-                    LibTIN.REGEX_FOREIGN_LANGUAGE_NAME_SEPARATOR
+            int provinceStart = row.indexOf(LibTIN.CSV_SEPARATOR) + 1;
+            int codeStart = row.indexOf(
+                LibTIN.CSV_SEPARATOR, provinceStart
+            ) + 1;
+            String name = row.substring(0, provinceStart - 1);
+            String province = row.substring(provinceStart, codeStart - 1);
+            Code code = Code.of(row.substring(codeStart));
+            int foreignNameStart = name.indexOf(
+                LibTIN.FOREIGN_LANGUAGE_NAME_SEPARATOR
+            );
+
+            if (foreignNameStart >= 0) {
+                String nameItalian = name.substring(0, foreignNameStart);
+                String nameForeignLanguage = name.substring(
+                    foreignNameStart
+                    + LibTIN.FOREIGN_LANGUAGE_NAME_SEPARATOR.length()
                 );
-                String nameItalian = allName[0];
-                String nameForeignLanguage = allName[1];
                 placeOfBirthList.add(
                     new CityBorder(
                         nameItalian, code, province, nameForeignLanguage
                     )
                 );
             } else
-                if (province.toUpperCase().equals(Country.PROVINCE_DEFAULT))
+                if (province.equalsIgnoreCase(Country.PROVINCE_DEFAULT))
                     placeOfBirthList.add(new Country(name, code));
                 else
                     placeOfBirthList.add(new City(name, code, province));
@@ -138,15 +202,12 @@ public class LibTIN {
      */
     public static TIN calculateTIN(Citizen citizen) {
         String surnameTriplet = LibTIN.determineTriplet(citizen.getSurname());
-        String nameTriplet = LibTIN.determineTriplet(citizen.getName());
-        String yearOfBirthPair = LibTIN.determineYearOfBirthPair(
-            citizen.getDateOfBirth()
-        );
-        char monthOfBirthChar = LibTIN.determineMonthOfBirthChar(
-            citizen.getDateOfBirth()
-        );
+        String nameTriplet = LibTIN.determineNameTriplet(citizen.getName());
+        LocalDate dateOfBirth = citizen.getLocalDateOfBirth();
+        String yearOfBirthPair = LibTIN.determineYearOfBirthPair(dateOfBirth);
+        char monthOfBirthChar = LibTIN.determineMonthOfBirthChar(dateOfBirth);
         String dayOfBirthGenderPair = LibTIN.determineDayOfBirthGenderPair(
-            citizen.getDateOfBirth(), citizen.getGender()
+            dateOfBirth, citizen.getGender()
         );
 
         String code = (
@@ -169,7 +230,8 @@ public class LibTIN {
      */
     public static Gender getGender(TIN tin) {
         return (
-            Integer.parseInt(tin.getCode().substring(9, 11)) > 31
+            LibTIN.determineDayOfBirthGender(tin.getCode())
+            > LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS
         ) ? Gender.FEMALE : Gender.MALE;
     }
 
@@ -179,21 +241,17 @@ public class LibTIN {
      * @return The date of birth.
      */
     public static Date getDateOfBirth(TIN tin) {
-        char monthChar = tin.getCode().substring(8, 9).toUpperCase().charAt(0);
-        int month = LibTIN.ALL_MONTH_OF_BIRTH_CHAR.indexOf(monthChar);
-        int year = Integer.parseInt(tin.getCode().substring(6, 8));
-        Calendar cal = Calendar.getInstance();
-        int yearNow = Integer.parseInt(
-            String.valueOf(cal.get(Calendar.YEAR)).substring(2, 4)
+        String code = tin.getCode();
+        int month = LibTIN.ALL_MONTH_OF_BIRTH_CHAR.indexOf(
+            Character.toUpperCase(code.charAt(LibTIN.MONTH_OF_BIRTH_START))
+        );
+        int year = LibTIN.determineYearOfBirth(
+            LibTIN.determinePairValue(code, LibTIN.YEAR_OF_BIRTH_START),
+            LocalDate.now().getYear() % 100
         );
+        int day = LibTIN.determineDayOfBirthGender(code)
+            % LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS;
 
-        if (year >= yearNow)
-            year += 1900;
-        else
-            year += 2000;
-        
-        int day = Integer.parseInt(tin.getCode().substring(9, 11));
-        cal.set(year, month, day);
         Instant instant = LocalDate.of(year, month + 1, day).atStartOfDay(
             ZoneId.systemDefault()
         ).toInstant();
@@ -202,7 +260,8 @@ public class LibTIN {
     }
 
     /**
-     * Extracts the place of birth from a full TIN code.
+     * Extracts the place of birth from a full TIN code, in any case and
+     * with the letters used for omocodia.
      * @param tin The TIN code.
      * @param allPlaceOfBirth A list of all the possible place of birth.
      * @return The place of birth.
@@ -211,80 +270,59 @@ public class LibTIN {
     public static PlaceOfBirth getPlaceOfBirth(
         TIN tin, List<PlaceOfBirth> allPlaceOfBirth
     ) {
-        Code placeOfBirthCode = new Code(tin.getCode().substring(11, 15));
-        
-        for (PlaceOfBirth placeOfBirth : allPlaceOfBirth) {
-            if (placeOfBirth.getCode().equals(placeOfBirthCode))
-                return placeOfBirth;
+        int packedCode = LibTIN.determinePlaceOfBirth(tin.getCode());
+
+        if (packedCode >= 0) {
+            for (PlaceOfBirth placeOfBirth : allPlaceOfBirth)
+                if (placeOfBirth.getCode().getPackedCode() == packedCode)
+                    return placeOfBirth;
+        } else {
+            Code placeOfBirthCode = new Code(
+                tin.getCode().substring(
+                    LibTIN.PLACE_OF_BIRTH_START, LibTIN.CONTROL_CHAR_START
+                )
+            );
+
+            for (PlaceOfBirth placeOfBirth : allPlaceOfBirth)
+                if (placeOfBirth.getCode().equals(placeOfBirthCode))
+                    return placeOfBirth;
         }
 
         throw new RuntimeException(
-            String.format("Place of birth %s not found.", placeOfBirthCode)
+            String.format(
+                "Place of birth %s not found.",
+                tin.getCode().substring(
+                    LibTIN.PLACE_OF_BIRTH_START, LibTIN.CONTROL_CHAR_START
+                )
+            )
         );
     }
 
     /**
      * Determines a TIN triplet from a string.
-     * @param name The string representing a name or a surname.
+     * @param name The string representing a surname.
      * @return The determined TIN triplet.
      */
     private static String determineTriplet(String name) {
-        name = name.replace(" ", "").toUpperCase();
-        String consonants = LibTIN.determineConsonants(name);
-        String vowels = LibTIN.determineVowels(name);
-
-        if (consonants.length() == 0)
-            if (vowels.length() == 0)
-				return "xxx";
-			else if (vowels.length() == 1)
-				return vowels + "xx";
-			else if (vowels.length() == 2)
-				return vowels + "x";
-			else
-				return vowels.substring(0, 3);
-        else if (consonants.length() == 1)
-            if (vowels.length() == 1)
-                return consonants + vowels + "x";
-            else
-                return consonants + vowels.substring(0, 2);
-        else if (consonants.length() == 2)
-            if (vowels.length() > 0)
-                return consonants + vowels.substring(0, 1);
-            else
-                return consonants + "x";
-        else
-            return consonants.substring(0, 3);
-    }
-
-    /**
-     * Determines the consonants in a given string.
-     * @param word The string with which to determine consonants.
-     * @return A string containing only the consonants char.
-     */
-    private static String determineConsonants(String word) {
-		word = word.toLowerCase();
-		String consonants = "";
-		for (char character : word.toCharArray())
-            if (LibTIN.ALL_VOWEL.indexOf(character) == -1)
-                consonants += character;
+        char[] triplet = new char[NameNormalizer.TRIPLET_LENGTH];
+        NameNormalizer.determineTriplet(name, 0, name.length(), triplet, 0);
 
-		return consonants;
-	}
+        return new String(triplet);
+    }
 
     /**
-     * Determines the vowels in a given string.
-     * @param word The string with which to determine vowels.
-     * @return A string containing only the vowels char.
+     * Determines the TIN triplet of a name, which skips the second of four
+     * or more consonants.
+     * @param name The string representing a name.
+     * @return The determined TIN triplet.
      */
-	private static String determineVowels(String word) {
-        word = word.toLowerCase();
-        String vowels = "";
-
-		for (char character : word.toCharArray())
-            if (LibTIN.ALL_VOWEL.indexOf(character) >= 0)
-                vowels += character;
+    private static String determineNameTriplet(String name) {
+        char[] triplet = new char[NameNormalizer.TRIPLET_LENGTH];
+        NameNormalizer.determineNameTriplet(
+            name, 0, name.length(), triplet, 0
+        );
 
-		return vowels;
+        return new String(triplet);
     }
     
     /**
@@ -292,8 +330,8 @@ public class LibTIN {
      * @param dateOfBirth The date object from which to extract the year.
      * @return The short two chars version of the year of a date.
      */
-    private static String determineYearOfBirthPair(Date dateOfBirth) {
-        return new SimpleDateFormat("yy").format(dateOfBirth);
+    private static String determineYearOfBirthPair(LocalDate dateOfBirth) {
+        return LibTIN.determinePair(dateOfBirth.getYear() % 100);
     }
 
     /**
@@ -301,12 +339,9 @@ public class LibTIN {
      * @param dateOfBirth The date to extract the month index from.
      * @return A char corresponding to the month of birth.
      */
-    private static char determineMonthOfBirthChar(Date dateOfBirth) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(dateOfBirth);
-
+    private static char determineMonthOfBirthChar(LocalDate dateOfBirth) {
         return LibTIN.ALL_MONTH_OF_BIRTH_CHAR.charAt(
-            calendar.get(Calendar.MONTH)
+            dateOfBirth.getMonthValue() - 1
         );
     }
 
@@ -318,17 +353,150 @@ public class LibTIN {
      * @return The two character pair.
      */
     private static String determineDayOfBirthGenderPair(
-        Date dateOfBirth, Gender gender
+        LocalDate dateOfBirth, Gender gender
     ) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(dateOfBirth);
-
-        int dayOfBirth = calendar.get(Calendar.DAY_OF_MONTH);
+        int dayOfBirth = dateOfBirth.getDayOfMonth();
 
         if (gender.equals(Gender.FEMALE))
             dayOfBirth += LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS;
         
-        return String.format("%02d", dayOfBirth);
+        return LibTIN.determinePair(dayOfBirth);
+    }
+
+    /**
+     * Formats a number between 0 and 99 as a two digits pair.
+     * @param number The number to format.
+     * @return The zero padded two chars pair.
+     */
+    private static String determinePair(int number) {
+        return new String(new char[] {
+            (char) ('0' + number / 10), (char) ('0' + number % 10),
+        });
+    }
+
+    /**
+     * Returns the digit of a char at a numeric position of a TIN, allowing
+     * the letters used for omocodia.
+     * @param character The char, in any case.
+     * @return The digit, or -1 if the char is not a digit.
+     */
+    static int determineDigit(char character) {
+        if (character >= '0' && character <= '9')
+            return character - '0';
+        else
+            return LibTIN.ALL_OMOCODE_CHAR.indexOf(
+                Character.toUpperCase(character)
+            );
+    }
+
+    /**
+     * Returns the index of the triplet of letters starting at an offset.
+     * @param code The TIN code, in any case.
+     * @param offset The index of the first letter.
+     * @return The index of the triplet, from 0 to 26^3 - 1, or -1 if a char
+     *  is not a letter.
+     */
+    static int determineTripletValue(CharSequence code, int offset) {
+        int triplet = 0;
+        for (int i = offset; i < offset + 3; i++) {
+            char letter = Character.toUpperCase(code.charAt(i));
+            if (letter < 'A' || letter > 'Z')
+                return -1;
+            triplet = triplet * 26 + letter - 'A';
+        }
+
+        return triplet;
+    }
+
+    /**
+     * Returns the value of the two digits pair starting at an offset.
+     * @param code The TIN code.
+     * @param offset The index of the first digit.
+     * @return The value of the pair, or -1 if a digit is not valid.
+     */
+    static int determinePairValue(CharSequence code, int offset) {
+        int tens = LibTIN.determineDigit(code.charAt(offset));
+        int units = LibTIN.determineDigit(code.charAt(offset + 1));
+
+        return tens < 0 || units < 0 ? -1 : tens * 10 + units;
+    }
+
+    /**
+     * Returns the value of the two digits pair of ASCII bytes starting at an
+     * offset.
+     * @param data The ASCII bytes of the TIN code.
+     * @param offset The index of the first digit.
+     * @return The value of the pair, or -1 if a digit is not valid.
+     */
+    static int determinePairValue(byte[] data, int offset) {
+        int tens = LibTIN.determineDigit((char) (data[offset] & 0xFF));
+        int units = LibTIN.determineDigit((char) (data[offset + 1] & 0xFF));
+
+        return tens < 0 || units < 0 ? -1 : tens * 10 + units;
+    }
+
+    /**
+     * Returns the place of birth of a TIN code, allowing the letters used
+     * for omocodia.
+     * @param code The TIN code, in any case.
+     * @return The packed code of the place of birth, or -1 if not valid.
+     */
+    static int determinePlaceOfBirth(CharSequence code) {
+        int start = LibTIN.PLACE_OF_BIRTH_START;
+        char letter = Character.toUpperCase(code.charAt(start));
+        int hundreds = LibTIN.determineDigit(code.charAt(start + 1));
+        int tens = LibTIN.determineDigit(code.charAt(start + 2));
+        int units = LibTIN.determineDigit(code.charAt(start + 3));
+
+        if (letter < 'A' || letter > 'Z' || (hundreds | tens | units) < 0)
+            return -1;
+
+        return (letter - 'A') * 1000 + hundreds * 100 + tens * 10 + units;
+    }
+
+    /**
+     * Returns the place of birth of a TIN code stored as ASCII bytes,
+     * allowing the letters used for omocodia.
+     * @param data The ASCII bytes of the code, in any case.
+     * @param start The index of the first byte of the code.
+     * @return The packed code of the place of birth, or -1 if not valid.
+     */
+    static int determinePlaceOfBirth(byte[] data, int start) {
+        start += LibTIN.PLACE_OF_BIRTH_START;
+        char letter = Character.toUpperCase((char) (data[start] & 0xFF));
+        int hundreds = LibTIN.determineDigit((char) (data[start + 1] & 0xFF));
+        int tens = LibTIN.determineDigit((char) (data[start + 2] & 0xFF));
+        int units = LibTIN.determineDigit((char) (data[start + 3] & 0xFF));
+
+        if (letter < 'A' || letter > 'Z' || (hundreds | tens | units) < 0)
+            return -1;
+
+        return (letter - 'A') * 1000 + hundreds * 100 + tens * 10 + units;
+    }
+
+    /**
+     * Returns the day of birth gender pair of a TIN code, which is the day
+     * of birth plus 40 for a female citizen.
+     * @param code The TIN code.
+     * @return The value of the pair.
+     */
+    static int determineDayOfBirthGender(CharSequence code) {
+        return LibTIN.determinePairValue(
+            code, LibTIN.DAY_OF_BIRTH_GENDER_START
+        );
+    }
+
+    /**
+     * Determines the full year of birth from its last two digits: years from
+     * the current one on are in the 1900s, the others in the 2000s.
+     * @param yearOfCentury The last two digits of the year of birth.
+     * @param yearOfCenturyNow The last two digits of the current year.
+     * @return The full year of birth.
+     */
+    static int determineYearOfBirth(int yearOfCentury, int yearOfCenturyNow) {
+        return yearOfCentury >= yearOfCenturyNow
+            ? 1900 + yearOfCentury
+            : 2000 + yearOfCentury;
     }
 
     /**
@@ -337,30 +505,71 @@ public class LibTIN {
      * @return The determined control char.
      */
     private static char determineControlChar(String code) {
-        code = code.toLowerCase();
-        short sumEven = 0;
-        short sumOdd = 0;
-        
-        for (int i = 0; i < code.length(); i++) {
-            char character = code.charAt(i);
-            int indexOfDigits = LibTIN.DIGITS_EVEN_INDEX.indexOf(character);
-            int indexOfLetters = LibTIN.LETTERS_EVEN_INDEX.indexOf(character);
-            boolean isEven = i % 2 == 1 ? true : false;
-
-            if (indexOfDigits > 0)
-                if (isEven)
-                    sumEven += indexOfDigits;
-                else
-                    sumOdd += LibTIN.DIGITS_ODD_VALUES[indexOfDigits];
-            else
-                if (isEven)
-                    sumEven += indexOfLetters;
-                else
-                    sumOdd += LibTIN.LETTERS_ODD_VALUES[indexOfLetters];
+        int sum = 0;
+
+        for (int i = 0; i < code.length(); i++)
+            sum += LibTIN.determineControlValue(code.charAt(i), i);
+
+        return LibTIN.determineControlChar(sum);
+    }
+
+    /**
+     * Determines the control char for the sum of the control values of the
+     * first 15 chars of a TIN code.
+     * @param sum The sum of the control values.
+     * @return The determined control char.
+     */
+    static char determineControlChar(int sum) {
+        return LibTIN.LETTERS_EVEN_INDEX.charAt(sum % 26);
+    }
+
+    /**
+     * Determines the value that a char adds to the control char sum.
+     * @param character The char of the TIN code, in any case.
+     * @param index The 0-based position of the char in the TIN code.
+     * @return The control value of the char, or -1 if it's not alphanumeric.
+     */
+    static int determineControlValue(char character, int index) {
+        boolean isEven = index % 2 == 1;
+
+        if (character >= '0' && character <= '9') {
+            int indexOfDigits = character - '0';
+            return isEven
+                ? indexOfDigits
+                : LibTIN.DIGITS_ODD_VALUES[indexOfDigits];
+        }
+
+        character = Character.toLowerCase(character);
+        if (character >= 'a' && character <= 'z') {
+            int indexOfLetters = character - 'a';
+            return isEven
+                ? indexOfLetters
+                : LibTIN.LETTERS_ODD_VALUES[indexOfLetters];
         }
 
-        int controlInteger = (sumEven + sumOdd) % 26;
+        return -1;
+    }
+
+    /**
+     * Holds the default list of place of birth, loaded on first use.
+     */
+    private static class DefaultPlaceOfBirthListHolder {
 
-        return LibTIN.LETTERS_EVEN_INDEX.charAt(controlInteger);
+        /**
+         * The shared default list of place of birth.
+         */
+        static final List<PlaceOfBirth> ALL_PLACE_OF_BIRTH;
+
+        static {
+            try {
+                ALL_PLACE_OF_BIRTH = Collections.unmodifiableList(
+                    LibTIN.loadDefaultPlaceOfBirthList()
+                );
+            } catch (IOException e) {
+                throw new RuntimeException(
+                    "The default list of place of birth cannot be read.", e
+                );
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package codicefiscale;
+
+/**
+ * This class normalizes names and surnames into TIN triplets.
+ * Every char is classified through a precomputed table that folds accented
+ * letters to their base letter and ignores spaces, apostrophes, hyphens and
+ * any other non-letter, so a triplet is found in a single pass without
+ * allocating.
+ */
+final class NameNormalizer {
+
+    /**
+     * The amount of chars in a triplet.
+     */
+    static final int TRIPLET_LENGTH = 3;
+
+    /**
+     * The char used to fill a triplet when there are not enough letters.
+     */
+    static final char FILLER = 'X';
+
+    /**
+     * The value of the table for a char that must be ignored.
+     */
+    private static final char IGNORE = 0;
+
+    /**
+     * The chars covered by the table: Latin-1 and Latin Extended-A.
+     */
+    private static final int TABLE_SIZE = 0x180;
+
+    /**
+     * The first accented letter of Latin-1.
+     */
+    private static final int LATIN_START = 0xC0;
+
+    /**
+     * The base letter of each char from LATIN_START on, '-' to ignore it.
+     */
+    private static final String ALL_LATIN_BASE_LETTER = (
+        "AAAAAAACEEEEIIIIDNOOOOO-OUUUUY-S"
+        + "AAAAAAACEEEEIIIIDNOOOOO-OUUUUY-Y"
+        + "AAAAAACCCCCCCCDDDDEEEEEEEEEEGGGG"
+        + "GGGGHHHHIIIIIIIIIIIIJJKKKLLLLLLL"
+        + "LLLNNNNNNNNNOOOOOOOORRRRRRSSSSSS"
+        + "SSTTTTTTUUUUUUUUUUUUWWYYYZZZZZZS"
+    );
+
+    /**
+     * The uppercase base letter of each char, or IGNORE.
+     */
+    private static final char[] ALL_BASE_LETTER = new char[TABLE_SIZE];
+
+    /**
+     * Whether each uppercase base letter, by index from A, is a vowel.
+     */
+    private static final boolean[] ALL_VOWEL = new boolean[26];
+
+    static {
+        for (char vowel : "AEIOU".toCharArray())
+            ALL_VOWEL[vowel - 'A'] = true;
+
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            ALL_BASE_LETTER[letter] = letter;
+            ALL_BASE_LETTER[Character.toLowerCase(letter)] = letter;
+        }
+
+        for (int i = LATIN_START; i < TABLE_SIZE; i++) {
+            char base = ALL_LATIN_BASE_LETTER.charAt(i - LATIN_START);
+            if (base != '-')
+                ALL_BASE_LETTER[i] = base;
+        }
+    }
+
+    private NameNormalizer() {
+    }
+
+    /**
+     * Returns the uppercase base letter of a char.
+     * @param character Any char.
+     * @return The base letter from A to Z, or 0 if the char is ignored.
+     */
+    static char determineBaseLetter(char character) {
+        return character < TABLE_SIZE ? ALL_BASE_LETTER[character] : IGNORE;
+    }
+
+    /**
+     * Determines if an uppercase base letter is a vowel.
+     * @param base A letter from A to Z.
+     * @return True if the letter is a vowel.
+     */
+    static boolean isVowel(char base) {
+        return ALL_VOWEL[base - 'A'];
+    }
+
+    /**
+     * Writes the TIN triplet of a surname: its consonants, then its vowels,
+     * then X until three chars are written.
+     * @param surname The surname.
+     * @param start The index of the first char of the surname.
+     * @param end The index after the last char of the surname.
+     * @param output The array to write the triplet to.
+     * @param offset The index to write the first char of the triplet to.
+     */
+    static void determineTriplet(
+        CharSequence surname, int start, int end, char[] output, int offset
+    ) {
+        NameNormalizer.determineTriplet(
+            surname, start, end, output, offset, false
+        );
+    }
+
+    /**
+     * Writes the TIN triplet of a name: as for a surname, except that a
+     * name with four or more consonants gives its first, third and fourth
+     * consonants.
+     * @param name The name.
+     * @param start The index of the first char of the name.
+     * @param end The index after the last char of the name.
+     * @param output The array to write the triplet to.
+     * @param offset The index to write the first char of the triplet to.
+     */
+    static void determineNameTriplet(
+        CharSequence name, int start, int end, char[] output, int offset
+    ) {
+        NameNormalizer.determineTriplet(name, start, end, output, offset, true);
+    }
+
+    /**
+     * Writes the TIN triplet of a name or a surname.
+     * @param name The name or surname.
+     * @param start The index of the first char of the name.
+     * @param end The index after the last char of the name.
+     * @param output The array to write the triplet to.
+     * @param offset The index to write the first char of the triplet to.
+     * @param isName True to skip the second of four or more consonants.
+     */
+    private static void determineTriplet(
+        CharSequence name,
+        int start,
+        int end,
+        char[] output,
+        int offset,
+        boolean isName
+    ) {
+        int consonantLimit = isName ? TRIPLET_LENGTH + 1 : TRIPLET_LENGTH;
+        int consonantCount = 0;
+        int vowelCount = 0;
+        char consonant0 = FILLER;
+        char consonant1 = FILLER;
+        char consonant2 = FILLER;
+        char consonant3 = FILLER;
+        char vowel0 = FILLER;
+        char vowel1 = FILLER;
+        char vowel2 = FILLER;
+
+        for (int i = start; i < end && consonantCount < consonantLimit; i++) {
+            char base = NameNormalizer.determineBaseLetter(name.charAt(i));
+            if (base == IGNORE)
+                continue;
+
+            if (!NameNormalizer.isVowel(base)) {
+                if (consonantCount == 0)
+                    consonant0 = base;
+                else if (consonantCount == 1)
+                    consonant1 = base;
+                else if (consonantCount == 2)
+                    consonant2 = base;
+                else
+                    consonant3 = base;
+                consonantCount++;
+            } else if (vowelCount == 0) {
+                vowel0 = base;
+                vowelCount++;
+            } else if (vowelCount == 1) {
+                vowel1 = base;
+                vowelCount++;
+            } else if (vowelCount == 2) {
+                vowel2 = base;
+                vowelCount++;
+            }
+        }
+
+        if (consonantCount > TRIPLET_LENGTH) {
+            output[offset] = consonant0;
+            output[offset + 1] = consonant2;
+            output[offset + 2] = consonant3;
+            return;
+        }
+
+        output[offset] = consonantCount > 0 ? consonant0 : vowel0;
+        output[offset + 1] = consonantCount > 1
+            ? consonant1
+            : consonantCount == 1 ? vowel0 : vowel1;
+        output[offset + 2] = consonantCount > 2
+            ? consonant2
+            : consonantCount == 2
+                ? vowel0
+                : consonantCount == 1 ? vowel1 : vowel2;
+    }
+}
@@ -0,0 +1,27 @@
+package codicefiscale;
+
+/**
+ * This enum lists the reasons why a string cannot be parsed into a TIN, a
+ * Code or a City.
+ */
+public enum ParseError {
+    /**
+     * The string does not have the expected length.
+     */
+    INVALID_LENGTH,
+
+    /**
+     * A char is not valid at its position.
+     */
+    INVALID_CHAR,
+
+    /**
+     * The control char of a TIN does not match the other chars.
+     */
+    INVALID_CONTROL_CHAR,
+
+    /**
+     * The province of a city is not a two character string.
+     */
+    INVALID_PROVINCE,
+}
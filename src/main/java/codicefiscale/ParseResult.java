@@ -0,0 +1,140 @@
+package codicefiscale;
+
+/**
+ * This class holds the outcome of a non-throwing parse: either the parsed
+ * value, or the error and the position of the char that caused it.
+ * A failed parse costs one small object, with no exception, stack trace
+ * or message formatting.
+ * @param <T> The type of the parsed value.
+ */
+public class ParseResult<T> {
+
+    /**
+     * The position of an error that is not about a single char.
+     */
+    public static final int NO_POSITION = -1;
+
+    /**
+     * The shared result of a successful validation, which has no value.
+     */
+    public static final ParseResult<Void> VALID =
+        new ParseResult<>(null, null, NO_POSITION);
+
+    /**
+     * The parsed value, or null.
+     */
+    private final T value;
+
+    /**
+     * The error, or null.
+     */
+    private final ParseError error;
+
+    /**
+     * The position of the char that caused the error, or NO_POSITION.
+     */
+    private final int errorPosition;
+
+    /**
+     * Creates an instance of a parse result.
+     * @param value The parsed value, or null.
+     * @param error The error, or null.
+     * @param errorPosition The position of the error, or NO_POSITION.
+     */
+    private ParseResult(T value, ParseError error, int errorPosition) {
+        this.value = value;
+        this.error = error;
+        this.errorPosition = errorPosition;
+    }
+
+    /**
+     * Creates the result of a successful parse.
+     * @param value The parsed value.
+     * @param <T> The type of the parsed value.
+     * @return The successful result.
+     */
+    static <T> ParseResult<T> success(T value) {
+        return new ParseResult<>(value, null, NO_POSITION);
+    }
+
+    /**
+     * Creates the result of a failed parse.
+     * @param error The error.
+     * @param errorPosition The position of the error, or NO_POSITION.
+     * @param <T> The type of the value that could not be parsed.
+     * @return The failed result.
+     */
+    static <T> ParseResult<T> failure(ParseError error, int errorPosition) {
+        return new ParseResult<>(null, error, errorPosition);
+    }
+
+    /**
+     * Returns this failed result as the failure of another type of value.
+     * @param <U> The other type of value.
+     * @return This result, which has no value.
+     */
+    @SuppressWarnings("unchecked")
+    <U> ParseResult<U> asFailure() {
+        if (this.error == null)
+            throw new RuntimeException("A successful result has a value.");
+
+        return (ParseResult<U>) this;
+    }
+
+    /**
+     * Determines if the parse succeeded.
+     * @return True if there is a value.
+     */
+    public boolean isValid() {
+        return this.error == null;
+    }
+
+    /**
+     * Returns the parsed value.
+     * @return The parsed value.
+     * @throws RuntimeException When the parse failed.
+     */
+    public T getValue() {
+        if (this.error != null)
+            throw new RuntimeException(this.toString());
+
+        return this.value;
+    }
+
+    /**
+     * Returns the parsed value, or a default one when the parse failed.
+     * @param other The value to return when the parse failed.
+     * @return The parsed value, or the default one.
+     */
+    public T orElse(T other) {
+        return this.error == null ? this.value : other;
+    }
+
+    /**
+     * Returns the error of a failed parse.
+     * @return The error, or null when the parse succeeded.
+     */
+    public ParseError getError() {
+        return this.error;
+    }
+
+    /**
+     * Returns the position of the char that caused the error.
+     * @return The 0-based position, or NO_POSITION.
+     */
+    public int getErrorPosition() {
+        return this.errorPosition;
+    }
+
+    /**
+     * Gives a string representation of a parse result.
+     */
+    public String toString() {
+        if (this.error == null)
+            return String.valueOf(this.value);
+        else if (this.errorPosition == NO_POSITION)
+            return this.error.toString();
+        else
+            return this.error + " at position " + this.errorPosition;
+    }
+}
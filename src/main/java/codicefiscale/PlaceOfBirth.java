@@ -2,13 +2,22 @@ package codicefiscale;
 
 /**
  * This class represents a place of birth for the ISTAT.
+ * Places of birth are immutable and can be shared across threads.
  */
 public abstract class PlaceOfBirth {
 
     /**
      * The actual code for this place of birth.
      */
-    protected Code code;
+    protected final Code code;
+
+    /**
+     * Creates an instance of a place of birth.
+     * @param code The ISTAT code.
+     */
+    protected PlaceOfBirth(Code code) {
+        this.code = code;
+    }
 
     /**
      * Returns the code of this city.
@@ -33,4 +42,11 @@ public abstract class PlaceOfBirth {
         else
             return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a hash code consistent with equals.
+     */
+    public int hashCode() {
+        return this.code.hashCode();
+    }
+}
@@ -0,0 +1,202 @@
+package codicefiscale;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class indexes a list of place of birth by packed code, so that the
+ * place of birth, province or country of a TIN is found with an array
+ * lookup. Provinces and countries are also numbered, so that they can be
+ * used as indexes of primitive arrays.
+ *
+ * When a code appears more than once in the list, the first place of birth
+ * with that code is used. Codes that cannot be packed are not indexed.
+ *
+ * Instances are immutable and can be shared across threads.
+ */
+public class PlaceOfBirthIndex {
+
+    /**
+     * The place of birth of each packed code, or null.
+     */
+    private final PlaceOfBirth[] allPlaceOfBirth =
+        new PlaceOfBirth[Code.PACKED_CODE_CAPACITY];
+
+    /**
+     * The province id of each packed code, or -1 if it's not a city.
+     */
+    private final int[] allProvinceId = new int[Code.PACKED_CODE_CAPACITY];
+
+    /**
+     * The country id of each packed code, or -1 if it's not a country.
+     */
+    private final int[] allCountryId = new int[Code.PACKED_CODE_CAPACITY];
+
+    /**
+     * The provinces, by province id.
+     */
+    private final String[] allProvince;
+
+    /**
+     * The countries, by country id.
+     */
+    private final Country[] allCountry;
+
+    /**
+     * Creates an index of a list of place of birth.
+     * @param allPlaceOfBirth The list of place of birth.
+     */
+    public PlaceOfBirthIndex(List<PlaceOfBirth> allPlaceOfBirth) {
+        Map<String, Integer> allProvinceIdByName = new HashMap<>();
+        List<String> allProvince = new ArrayList<>();
+        List<Country> allCountry = new ArrayList<>();
+
+        for (int i = 0; i < Code.PACKED_CODE_CAPACITY; i++) {
+            this.allProvinceId[i] = -1;
+            this.allCountryId[i] = -1;
+        }
+
+        for (PlaceOfBirth placeOfBirth : allPlaceOfBirth) {
+            int packedCode = placeOfBirth.getCode().getPackedCode();
+            if (
+                packedCode == Code.NOT_PACKED
+                || this.allPlaceOfBirth[packedCode] != null
+            )
+                continue;
+
+            this.allPlaceOfBirth[packedCode] = placeOfBirth;
+
+            if (placeOfBirth instanceof Country) {
+                this.allCountryId[packedCode] = allCountry.size();
+                allCountry.add((Country) placeOfBirth);
+            } else {
+                String province = placeOfBirth.getProvinceOfBirth();
+                Integer provinceId = allProvinceIdByName.get(province);
+                if (provinceId == null) {
+                    provinceId = allProvince.size();
+                    allProvinceIdByName.put(province, provinceId);
+                    allProvince.add(province);
+                }
+                this.allProvinceId[packedCode] = provinceId;
+            }
+        }
+
+        this.allProvince = allProvince.toArray(new String[0]);
+        this.allCountry = allCountry.toArray(new Country[0]);
+    }
+
+    /**
+     * Returns the index of the default list of place of birth.
+     * @return The shared index of LibTIN.getDefaultPlaceOfBirthList().
+     */
+    public static PlaceOfBirthIndex getDefault() {
+        return DefaultPlaceOfBirthIndexHolder.DEFAULT;
+    }
+
+    /**
+     * Returns the place of birth with a packed code.
+     * @param packedCode The packed code.
+     * @return The place of birth, or null if the code is unknown.
+     */
+    public PlaceOfBirth get(int packedCode) {
+        if (packedCode < 0 || packedCode >= Code.PACKED_CODE_CAPACITY)
+            return null;
+
+        return this.allPlaceOfBirth[packedCode];
+    }
+
+    /**
+     * Determines if a packed code is the code of a known place of birth.
+     * @param packedCode The packed code.
+     * @return True if the code is in the index.
+     */
+    public boolean contains(int packedCode) {
+        return this.get(packedCode) != null;
+    }
+
+    /**
+     * Returns the province id of the city with a packed code.
+     * @param packedCode The packed code.
+     * @return The province id, or -1 if the code is not a known city.
+     */
+    public int getProvinceId(int packedCode) {
+        if (packedCode < 0 || packedCode >= Code.PACKED_CODE_CAPACITY)
+            return -1;
+
+        return this.allProvinceId[packedCode];
+    }
+
+    /**
+     * Returns the country id of the country with a packed code.
+     * @param packedCode The packed code.
+     * @return The country id, or -1 if the code is not a known country.
+     */
+    public int getCountryId(int packedCode) {
+        if (packedCode < 0 || packedCode >= Code.PACKED_CODE_CAPACITY)
+            return -1;
+
+        return this.allCountryId[packedCode];
+    }
+
+    /**
+     * Returns a province from its id.
+     * @param provinceId The province id.
+     * @return The two chars province.
+     */
+    public String getProvince(int provinceId) {
+        return this.allProvince[provinceId];
+    }
+
+    /**
+     * Returns a country from its id.
+     * @param countryId The country id.
+     * @return The country.
+     */
+    public Country getCountry(int countryId) {
+        return this.allCountry[countryId];
+    }
+
+    /**
+     * Returns the id of a province.
+     * @param province The two chars province.
+     * @return The province id, or -1 if the province is not in the index.
+     */
+    public int getProvinceId(String province) {
+        for (int i = 0; i < this.allProvince.length; i++)
+            if (this.allProvince[i].equals(province))
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * Returns the amount of distinct provinces.
+     * @return The amount of provinces, the upper bound of province ids.
+     */
+    public int getProvinceCount() {
+        return this.allProvince.length;
+    }
+
+    /**
+     * Returns the amount of distinct countries.
+     * @return The amount of countries, the upper bound of country ids.
+     */
+    public int getCountryCount() {
+        return this.allCountry.length;
+    }
+
+    /**
+     * Holds the index of the default list of place of birth.
+     */
+    private static class DefaultPlaceOfBirthIndexHolder {
+
+        /**
+         * The shared index of the default list of place of birth.
+         */
+        static final PlaceOfBirthIndex DEFAULT = new PlaceOfBirthIndex(
+            LibTIN.getDefaultPlaceOfBirthList()
+        );
+    }
+}
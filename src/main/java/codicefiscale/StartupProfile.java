@@ -0,0 +1,42 @@
+package codicefiscale;
+
+import java.time.LocalDate;
+
+import codicefiscale.Citizen.Gender;
+
+/**
+ * This class is the entry point used to train and measure the startup
+ * profiles of this library (AppCDS archive and native image).
+ * It loads the default list of place of birth, calculates one TIN and
+ * reverses its place of birth, which is what a short-lived CLI or function
+ * invocation does.
+ */
+public class StartupProfile {
+
+    /**
+     * Calculates a TIN and prints it along with the time it took.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+
+        Citizen citizen = new Citizen(
+            "Mario",
+            "Rossi",
+            LocalDate.of(1980, 1, 1),
+            Gender.MALE,
+            new City("Milano", Code.of("F205"), "MI")
+        );
+        TIN tin = LibTIN.calculateTIN(citizen);
+        PlaceOfBirth placeOfBirth = LibTIN.getPlaceOfBirth(
+            tin, LibTIN.getDefaultPlaceOfBirthList()
+        );
+
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(
+            tin + " " + placeOfBirth.getCode()
+            + ", first TIN in " + elapsed / 1000 + " us"
+        );
+    }
+}
@@ -3,40 +3,85 @@ package codicefiscale;
 /**
  * This class represents an Italian Taxpayer Identification Number 
  * as per governmental definition.
+ * Instances are immutable and can be shared across threads.
  */
 public class TIN {
 
     /**
      * The 16-char string representing the actual code.
      */
-    private String code;
+    private final String code;
 
     /**
-     * The actual length of any Italian TIN.
+     * The case-insensitive hash code, computed once.
      */
-    private static final short CODE_LENGTH = 16;
+    private final int hashCode;
 
     /**
      * Creates an instance of a TIN.
      * @param code The actual TIN code.
      */
     public TIN(String code) {
-        if (code.length() == TIN.CODE_LENGTH)
+        if (code.length() == LibTIN.CODE_LENGTH) {
             this.code = code;
-        else
+            this.hashCode = TIN.determineHashCode(code);
+        } else
             throw new RuntimeException(
                 String.format(
                     String.join(
                         "",
-                        "The TIN code must be of %i characters, ",
-                        "given code of length %i instead."
+                        "The TIN code must be of %d characters, ",
+                        "given code of length %d instead."
                     ),
-                    TIN.CODE_LENGTH,
+                    LibTIN.CODE_LENGTH,
                     code.length()
                 )
             );
     }
 
+    /**
+     * Parses and fully validates a TIN without throwing: its structure, as
+     * checked by IncrementalTINValidator, and its control char.
+     * Unlike the constructor, invalid codes of the right length are
+     * rejected.
+     * @param code The TIN code, in any case.
+     * @return The TIN, or the error and the position of the first invalid
+     *  char.
+     */
+    public static ParseResult<TIN> tryParse(String code) {
+        ParseResult<Void> validation = TIN.validate(code);
+
+        if (validation.isValid())
+            return ParseResult.success(new TIN(code));
+        else
+            return validation.asFailure();
+    }
+
+    /**
+     * Validates a TIN code without throwing or creating a TIN.
+     * @param code The TIN code, in any case.
+     * @return ParseResult.VALID, or the error and the position of the first
+     *  invalid char.
+     */
+    public static ParseResult<Void> validate(CharSequence code) {
+        if (code.length() != LibTIN.CODE_LENGTH)
+            return ParseResult.failure(
+                ParseError.INVALID_LENGTH, ParseResult.NO_POSITION
+            );
+
+        IncrementalTINValidator validator = new IncrementalTINValidator();
+        for (int i = 0; i < LibTIN.CODE_LENGTH; i++)
+            if (!validator.append(code.charAt(i)))
+                return ParseResult.failure(
+                    i == LibTIN.CONTROL_CHAR_START
+                        ? ParseError.INVALID_CONTROL_CHAR
+                        : ParseError.INVALID_CHAR,
+                    i
+                );
+
+        return ParseResult.VALID;
+    }
+
     /**
      * Returns the actual string version of the TIN.
      * @return The TIN string.
@@ -61,4 +106,28 @@ public class TIN {
         else
             return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a hash code consistent with equals, so ignoring case.
+     */
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    /**
+     * Determines a hash code that ignores the case of the chars, the same
+     * way String.equalsIgnoreCase does.
+     * @param code The TIN code.
+     * @return The case-insensitive hash code.
+     */
+    private static int determineHashCode(String code) {
+        int hashCode = 0;
+
+        for (int i = 0; i < code.length(); i++)
+            hashCode = 31 * hashCode + Character.toLowerCase(
+                Character.toUpperCase(code.charAt(i))
+            );
+
+        return hashCode;
+    }
+}
@@ -0,0 +1,179 @@
+package codicefiscale;
+
+import codicefiscale.Citizen.Gender;
+
+/**
+ * This class holds the counters of a TINAggregator: the amount of TIN codes
+ * by year and month of birth, gender, province and country of birth.
+ *
+ * Instances are not thread-safe: each thread fills its own aggregation, and
+ * the partial aggregations are merged at the end.
+ */
+public class TINAggregation {
+
+    /**
+     * The index used to number provinces and countries.
+     */
+    private final PlaceOfBirthIndex placeOfBirthIndex;
+
+    /**
+     * The last two digits of the year the codes are read in.
+     */
+    private final int yearOfCenturyNow;
+
+    /**
+     * The amount of valid codes.
+     */
+    long count;
+
+    /**
+     * The amount of invalid codes.
+     */
+    long invalidCount;
+
+    /**
+     * The amount of codes by last two digits of the year of birth.
+     */
+    final long[] allCountByYearOfCentury = new long[100];
+
+    /**
+     * The amount of codes by month of birth, January is index 0.
+     */
+    final long[] allCountByMonth = new long[12];
+
+    /**
+     * The amount of codes by Citizen.Gender ordinal.
+     */
+    final long[] allCountByGender = new long[Gender.values().length];
+
+    /**
+     * The amount of codes by province id.
+     */
+    final long[] allCountByProvince;
+
+    /**
+     * The amount of codes by country id.
+     */
+    final long[] allCountByCountry;
+
+    /**
+     * Creates an empty aggregation.
+     * @param placeOfBirthIndex The index used to number provinces and
+     *  countries.
+     * @param yearOfCenturyNow The last two digits of the current year.
+     */
+    TINAggregation(PlaceOfBirthIndex placeOfBirthIndex, int yearOfCenturyNow) {
+        this.placeOfBirthIndex = placeOfBirthIndex;
+        this.yearOfCenturyNow = yearOfCenturyNow;
+        this.allCountByProvince =
+            new long[placeOfBirthIndex.getProvinceCount()];
+        this.allCountByCountry = new long[placeOfBirthIndex.getCountryCount()];
+    }
+
+    /**
+     * Adds the counters of another aggregation to this one.
+     * @param other An aggregation made by the same aggregator.
+     * @return This aggregation.
+     */
+    public TINAggregation merge(TINAggregation other) {
+        if (other.placeOfBirthIndex != this.placeOfBirthIndex)
+            throw new RuntimeException(
+                "Only aggregations of the same aggregator can be merged."
+            );
+
+        this.count += other.count;
+        this.invalidCount += other.invalidCount;
+        TINAggregation.add(
+            this.allCountByYearOfCentury, other.allCountByYearOfCentury
+        );
+        TINAggregation.add(this.allCountByMonth, other.allCountByMonth);
+        TINAggregation.add(this.allCountByGender, other.allCountByGender);
+        TINAggregation.add(this.allCountByProvince, other.allCountByProvince);
+        TINAggregation.add(this.allCountByCountry, other.allCountByCountry);
+
+        return this;
+    }
+
+    /**
+     * Returns the amount of valid codes.
+     * @return The amount of valid codes.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the amount of invalid codes, which are not in any counter.
+     * @return The amount of invalid codes.
+     */
+    public long getInvalidCount() {
+        return this.invalidCount;
+    }
+
+    /**
+     * Returns the amount of codes by year of birth. The year of a code is
+     * determined as in LibTIN.getDateOfBirth.
+     * @param year The full year of birth.
+     * @return The amount of codes born in that year.
+     */
+    public long getCountByYearOfBirth(int year) {
+        int yearOfCentury = Math.floorMod(year, 100);
+        if (
+            LibTIN.determineYearOfBirth(yearOfCentury, this.yearOfCenturyNow)
+            != year
+        )
+            return 0;
+
+        return this.allCountByYearOfCentury[yearOfCentury];
+    }
+
+    /**
+     * Returns the amount of codes by month of birth.
+     * @param month The month of birth, from 1 to 12.
+     * @return The amount of codes born in that month.
+     */
+    public long getCountByMonthOfBirth(int month) {
+        return this.allCountByMonth[month - 1];
+    }
+
+    /**
+     * Returns the amount of codes by gender.
+     * @param gender The gender.
+     * @return The amount of codes of that gender.
+     */
+    public long getCountByGender(Gender gender) {
+        return this.allCountByGender[gender.ordinal()];
+    }
+
+    /**
+     * Returns the amount of codes by province of birth.
+     * @param province The two chars province.
+     * @return The amount of codes born in a city of that province.
+     */
+    public long getCountByProvince(String province) {
+        int provinceId = this.placeOfBirthIndex.getProvinceId(province);
+        return provinceId >= 0 ? this.allCountByProvince[provinceId] : 0;
+    }
+
+    /**
+     * Returns the amount of codes by country of birth.
+     * @param country The foreign country.
+     * @return The amount of codes born in that country.
+     */
+    public long getCountByCountry(Country country) {
+        int countryId = this.placeOfBirthIndex.getCountryId(
+            country.getCode().getPackedCode()
+        );
+        return countryId >= 0 ? this.allCountByCountry[countryId] : 0;
+    }
+
+    /**
+     * Adds the values of an array to another one.
+     * @param to The array to add to.
+     * @param from The array to add.
+     */
+    private static void add(long[] to, long[] from) {
+        for (int i = 0; i < to.length; i++)
+            to[i] += from[i];
+    }
+}
@@ -0,0 +1,263 @@
+package codicefiscale;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import codicefiscale.Citizen.Gender;
+
+/**
+ * This class counts TIN codes by year and month of birth, gender, province
+ * and country of birth. The codes are read as ASCII bytes and decoded in
+ * place, without creating any TIN, Date or PlaceOfBirth, and the place of
+ * birth is joined to its province or country through a PlaceOfBirthIndex.
+ *
+ * Codes with an invalid structure, an unknown place of birth or a wrong
+ * control char are only counted as invalid. Codes are accepted in any case
+ * and with the letters used for omocodia.
+ *
+ * Instances are immutable and can be shared across threads.
+ */
+public class TINAggregator {
+
+    /**
+     * The amount of codes aggregated by each task in parallel mode.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 16384;
+
+    /**
+     * The size of the buffer used to read streams.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The index used to join places of birth to provinces and countries.
+     */
+    private final PlaceOfBirthIndex placeOfBirthIndex;
+
+    /**
+     * The last two digits of the current year, used to resolve years.
+     */
+    private final int yearOfCenturyNow;
+
+    /**
+     * Creates an aggregator that joins places of birth through an index.
+     * @param placeOfBirthIndex The index of the known places of birth.
+     */
+    public TINAggregator(PlaceOfBirthIndex placeOfBirthIndex) {
+        this.placeOfBirthIndex = placeOfBirthIndex;
+        this.yearOfCenturyNow = LocalDate.now().getYear() % 100;
+    }
+
+    /**
+     * Creates an empty aggregation for this aggregator.
+     * @return An aggregation with all counters at zero.
+     */
+    public TINAggregation newAggregation() {
+        return new TINAggregation(
+            this.placeOfBirthIndex, this.yearOfCenturyNow
+        );
+    }
+
+    /**
+     * Aggregates codes stored row-wise in a byte[].
+     * @param data The ASCII bytes of the codes.
+     * @param offset The index of the first byte of the first code.
+     * @param stride The distance in bytes between two codes, at least 16.
+     * @param count The amount of codes.
+     * @param parallel Whether to split the codes across cores, each with its
+     *  own partial aggregation.
+     * @return The aggregation of the codes.
+     */
+    public TINAggregation aggregate(
+        byte[] data, int offset, int stride, int count, boolean parallel
+    ) {
+        if (stride < LibTIN.CODE_LENGTH)
+            throw new RuntimeException(
+                "The stride must be at least the length of a TIN."
+            );
+
+        if (!parallel || count <= PARALLEL_CHUNK_SIZE) {
+            TINAggregation aggregation = this.newAggregation();
+            this.aggregate(data, offset, stride, 0, count, aggregation);
+            return aggregation;
+        }
+
+        int chunkCount =
+            (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        return IntStream.range(0, chunkCount).parallel().collect(
+            this::newAggregation,
+            (aggregation, chunk) -> this.aggregate(
+                data,
+                offset,
+                stride,
+                chunk * PARALLEL_CHUNK_SIZE,
+                Math.min(count, (chunk + 1) * PARALLEL_CHUNK_SIZE),
+                aggregation
+            ),
+            TINAggregation::merge
+        );
+    }
+
+    /**
+     * Aggregates a stream of codes, one per line. Lines can end with \n or
+     * \r\n, empty lines are skipped and lines that are not 16 chars long
+     * are counted as invalid. The stream is not closed.
+     * @param input The stream of codes.
+     * @param aggregation The aggregation to add the codes to.
+     * @throws IOException When the stream cannot be read.
+     */
+    public void aggregate(InputStream input, TINAggregation aggregation)
+        throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        boolean isSkipping = false;
+        int read;
+
+        while (
+            (read = input.read(buffer, length, buffer.length - length)) > 0
+        ) {
+            length += read;
+            int lineStart = 0;
+
+            for (int i = 0; i < length; i++)
+                if (buffer[i] == '\n') {
+                    if (!isSkipping)
+                        this.aggregateLine(buffer, lineStart, i, aggregation);
+                    isSkipping = false;
+                    lineStart = i + 1;
+                }
+
+            System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+            length -= lineStart;
+
+            // A line longer than the buffer is counted once, then the rest
+            // of it is skipped up to the next line feed.
+            if (length == buffer.length) {
+                if (!isSkipping)
+                    aggregation.invalidCount++;
+                isSkipping = true;
+                length = 0;
+            }
+        }
+
+        if (!isSkipping)
+            this.aggregateLine(buffer, 0, length, aggregation);
+    }
+
+    /**
+     * Aggregates one line of a stream.
+     * @param data The buffer holding the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index of the line feed, or the end of the data.
+     * @param aggregation The aggregation to add the code to.
+     */
+    private void aggregateLine(
+        byte[] data, int start, int end, TINAggregation aggregation
+    ) {
+        if (end > start && data[end - 1] == '\r')
+            end--;
+
+        if (end - start == LibTIN.CODE_LENGTH)
+            this.aggregate(data, start, aggregation);
+        else if (end > start)
+            aggregation.invalidCount++;
+    }
+
+    /**
+     * Aggregates a range of codes stored row-wise.
+     * @param data The ASCII bytes of the codes.
+     * @param offset The index of the first byte of the first code.
+     * @param stride The distance in bytes between two codes.
+     * @param from The first code to aggregate.
+     * @param to The code after the last one to aggregate.
+     * @param aggregation The aggregation to add the codes to.
+     */
+    private void aggregate(
+        byte[] data,
+        int offset,
+        int stride,
+        int from,
+        int to,
+        TINAggregation aggregation
+    ) {
+        for (int i = from; i < to; i++)
+            this.aggregate(data, offset + i * stride, aggregation);
+    }
+
+    /**
+     * Decodes one code and updates the counters.
+     * @param data The ASCII bytes of the code.
+     * @param start The index of the first byte of the code.
+     * @param aggregation The aggregation to add the code to.
+     */
+    private void aggregate(
+        byte[] data, int start, TINAggregation aggregation
+    ) {
+        int sum = 0;
+        for (int i = 0; i < LibTIN.CONTROL_CHAR_START; i++) {
+            int controlValue = LibTIN.determineControlValue(
+                (char) (data[start + i] & 0xFF), i
+            );
+            if (controlValue < 0) {
+                aggregation.invalidCount++;
+                return;
+            }
+            sum += controlValue;
+        }
+
+        char controlChar = (char) (
+            data[start + LibTIN.CONTROL_CHAR_START] & 0xFF
+        );
+        if (
+            Character.toLowerCase(controlChar)
+            != LibTIN.determineControlChar(sum)
+        ) {
+            aggregation.invalidCount++;
+            return;
+        }
+
+        int yearOfCentury = LibTIN.determinePairValue(
+            data, start + LibTIN.YEAR_OF_BIRTH_START
+        );
+        int month = LibTIN.ALL_MONTH_OF_BIRTH_CHAR.indexOf(
+            Character.toUpperCase(
+                (char) (data[start + LibTIN.MONTH_OF_BIRTH_START] & 0xFF)
+            )
+        );
+        int dayOfBirthGender = LibTIN.determinePairValue(
+            data, start + LibTIN.DAY_OF_BIRTH_GENDER_START
+        );
+        int day = dayOfBirthGender % LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS;
+        int packedCode = LibTIN.determinePlaceOfBirth(data, start);
+        int provinceId = this.placeOfBirthIndex.getProvinceId(packedCode);
+        int countryId = this.placeOfBirthIndex.getCountryId(packedCode);
+
+        if (
+            yearOfCentury < 0
+            || month < 0
+            || dayOfBirthGender < 0
+            || day < 1
+            || day > 31
+            || dayOfBirthGender / LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS > 1
+            || (provinceId < 0 && countryId < 0)
+        ) {
+            aggregation.invalidCount++;
+            return;
+        }
+
+        aggregation.count++;
+        aggregation.allCountByYearOfCentury[yearOfCentury]++;
+        aggregation.allCountByMonth[month]++;
+        aggregation.allCountByGender[
+            dayOfBirthGender > LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS
+                ? Gender.FEMALE.ordinal()
+                : Gender.MALE.ordinal()
+        ]++;
+        if (provinceId >= 0)
+            aggregation.allCountByProvince[provinceId]++;
+        else
+            aggregation.allCountByCountry[countryId]++;
+    }
+}
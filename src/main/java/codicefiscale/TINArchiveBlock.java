@@ -0,0 +1,345 @@
+package codicefiscale;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is one block of a TIN archive: up to a few tens of thousands
+ * of codes stored column by column, with the statistics needed to skip it
+ * without decoding it.
+ *
+ * Each code is split into a surname triplet, a name triplet and a place of
+ * birth, which are dictionary-encoded within the block, a date and gender
+ * key, which is stored as its offset from the block minimum, and the
+ * positions of the omocodia letters. The control char is not stored, it is
+ * recomputed while decoding. Every column is bit-packed with the least
+ * amount of bits its values need.
+ *
+ * Blocks are immutable and can be decoded in parallel.
+ */
+public class TINArchiveBlock {
+
+    /**
+     * The amount of codes in the block.
+     */
+    private final int count;
+
+    /**
+     * The smallest date key of the block.
+     */
+    private final int minDateKey;
+
+    /**
+     * The largest date key of the block.
+     */
+    private final int maxDateKey;
+
+    /**
+     * The smallest packed place of birth code of the block.
+     */
+    private final int minPlaceOfBirth;
+
+    /**
+     * The largest packed place of birth code of the block.
+     */
+    private final int maxPlaceOfBirth;
+
+    /**
+     * The encoded columns.
+     */
+    private final byte[] payload;
+
+    /**
+     * Creates an instance of an encoded block.
+     * @param count The amount of codes in the block.
+     * @param minDateKey The smallest date key of the block.
+     * @param maxDateKey The largest date key of the block.
+     * @param minPlaceOfBirth The smallest packed place of birth code.
+     * @param maxPlaceOfBirth The largest packed place of birth code.
+     * @param payload The encoded columns.
+     */
+    TINArchiveBlock(
+        int count,
+        int minDateKey,
+        int maxDateKey,
+        int minPlaceOfBirth,
+        int maxPlaceOfBirth,
+        byte[] payload
+    ) {
+        this.count = count;
+        this.minDateKey = minDateKey;
+        this.maxDateKey = maxDateKey;
+        this.minPlaceOfBirth = minPlaceOfBirth;
+        this.maxPlaceOfBirth = maxPlaceOfBirth;
+        this.payload = payload;
+    }
+
+    /**
+     * Returns the amount of codes in the block.
+     * @return The amount of codes.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the smallest date key of the block.
+     * @return The smallest date key, see dateKey.
+     */
+    public int getMinDateKey() {
+        return this.minDateKey;
+    }
+
+    /**
+     * Returns the largest date key of the block.
+     * @return The largest date key, see dateKey.
+     */
+    public int getMaxDateKey() {
+        return this.maxDateKey;
+    }
+
+    /**
+     * Returns the smallest place of birth of the block.
+     * @return The smallest packed place of birth code.
+     */
+    public int getMinPlaceOfBirth() {
+        return this.minPlaceOfBirth;
+    }
+
+    /**
+     * Returns the largest place of birth of the block.
+     * @return The largest packed place of birth code.
+     */
+    public int getMaxPlaceOfBirth() {
+        return this.maxPlaceOfBirth;
+    }
+
+    /**
+     * Returns the encoded columns of the block.
+     * @return The payload, not to be modified.
+     */
+    byte[] getPayload() {
+        return this.payload;
+    }
+
+    /**
+     * Returns the date key of a date of birth, which orders dates by last
+     * two digits of the year, then month, then day.
+     * @param yearOfCentury The last two digits of the year, from 0 to 99.
+     * @param month The month, from 1 to 12.
+     * @param day The day of the month, from 1 to 31.
+     * @return The date key.
+     */
+    public static int dateKey(int yearOfCentury, int month, int day) {
+        return (yearOfCentury * 12 + month - 1) * 32 + day;
+    }
+
+    /**
+     * Decodes the codes of the block as chars.
+     * @param output The array to write count * 16 chars to.
+     * @param offset The index to write the first char to.
+     */
+    public void decode(char[] output, int offset) {
+        BitReader reader = new BitReader(this.payload);
+        int[] allSurname = reader.readDictionaryColumn(this.count);
+        int[] allName = reader.readDictionaryColumn(this.count);
+        int[] allPlaceOfBirth = reader.readDictionaryColumn(this.count);
+        int[] allDateKey = reader.readFrameOfReferenceColumn(this.count);
+        int[] allFemale = reader.readFrameOfReferenceColumn(this.count);
+        int[] allOmocodeMask = reader.readFrameOfReferenceColumn(this.count);
+
+        for (int i = 0; i < this.count; i++) {
+            int start = offset + i * LibTIN.CODE_LENGTH;
+            TINArchiveBlock.writeTriplet(allSurname[i], output, start);
+            TINArchiveBlock.writeTriplet(
+                allName[i], output, start + LibTIN.NAME_START
+            );
+
+            int dateKey = allDateKey[i];
+            int day = dateKey % 32;
+            int month = dateKey / 32 % 12;
+            int yearOfCentury = dateKey / 32 / 12;
+            if (allFemale[i] != 0)
+                day += LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS;
+
+            TINArchiveBlock.writePair(
+                yearOfCentury, output, start + LibTIN.YEAR_OF_BIRTH_START
+            );
+            output[start + LibTIN.MONTH_OF_BIRTH_START] =
+                LibTIN.ALL_MONTH_OF_BIRTH_CHAR.charAt(month);
+            TINArchiveBlock.writePair(
+                day, output, start + LibTIN.DAY_OF_BIRTH_GENDER_START
+            );
+
+            int placeOfBirth = allPlaceOfBirth[i];
+            int number = placeOfBirth % 1000;
+            int placeStart = start + LibTIN.PLACE_OF_BIRTH_START;
+            output[placeStart] = (char) ('A' + placeOfBirth / 1000);
+            output[placeStart + 1] = (char) ('0' + number / 100);
+            output[placeStart + 2] = (char) ('0' + number / 10 % 10);
+            output[placeStart + 3] = (char) ('0' + number % 10);
+
+            int omocodeMask = allOmocodeMask[i];
+            for (int j = 0; omocodeMask != 0; j++, omocodeMask >>>= 1)
+                if ((omocodeMask & 1) != 0) {
+                    int position = start + LibTIN.ALL_DIGIT_POSITION[j];
+                    output[position] = LibTIN.ALL_OMOCODE_CHAR.charAt(
+                        output[position] - '0'
+                    );
+                }
+
+            int sum = 0;
+            for (int j = 0; j < LibTIN.CONTROL_CHAR_START; j++)
+                sum += LibTIN.determineControlValue(output[start + j], j);
+            output[start + LibTIN.CONTROL_CHAR_START] = Character.toUpperCase(
+                LibTIN.determineControlChar(sum)
+            );
+        }
+    }
+
+    /**
+     * Decodes the codes of the block as TIN objects.
+     * @return The codes of the block, in the order they were written.
+     */
+    public List<TIN> decode() {
+        char[] allChar = new char[this.count * LibTIN.CODE_LENGTH];
+        this.decode(allChar, 0);
+
+        List<TIN> allTIN = new ArrayList<>(this.count);
+        for (int i = 0; i < this.count; i++)
+            allTIN.add(new TIN(
+                new String(allChar, i * LibTIN.CODE_LENGTH, LibTIN.CODE_LENGTH)
+            ));
+
+        return allTIN;
+    }
+
+    /**
+     * Writes the three letters of a triplet index.
+     * @param triplet The triplet index, from 0 to 26^3 - 1.
+     * @param output The array to write to.
+     * @param offset The index to write the first letter to.
+     */
+    private static void writeTriplet(int triplet, char[] output, int offset) {
+        output[offset] = (char) ('A' + triplet / (26 * 26));
+        output[offset + 1] = (char) ('A' + triplet / 26 % 26);
+        output[offset + 2] = (char) ('A' + triplet % 26);
+    }
+
+    /**
+     * Writes a number between 0 and 99 as two digits.
+     * @param number The number.
+     * @param output The array to write to.
+     * @param offset The index to write the first digit to.
+     */
+    private static void writePair(int number, char[] output, int offset) {
+        output[offset] = (char) ('0' + number / 10);
+        output[offset + 1] = (char) ('0' + number % 10);
+    }
+
+    /**
+     * Returns the amount of bits needed to store a value.
+     * @param value A non negative value.
+     * @return The amount of bits, 0 for 0.
+     */
+    static int determineBitWidth(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * This class reads the bit-packed columns of a payload.
+     */
+    private static class BitReader {
+
+        /**
+         * The payload.
+         */
+        private final byte[] data;
+
+        /**
+         * The index of the next byte to read.
+         */
+        private int position;
+
+        /**
+         * Creates a reader of a payload.
+         * @param data The payload.
+         */
+        BitReader(byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Reads an int written as 4 bytes, big endian.
+         * @return The int.
+         */
+        int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++)
+                value = (value << 8) | (this.data[this.position++] & 0xFF);
+
+            return value;
+        }
+
+        /**
+         * Reads a dictionary-encoded column: the dictionary, then the
+         * bit-packed index of each value in the dictionary.
+         * @param count The amount of values.
+         * @return The values.
+         */
+        int[] readDictionaryColumn(int count) {
+            int[] dictionary = new int[this.readInt()];
+            for (int i = 0; i < dictionary.length; i++)
+                dictionary[i] = this.readInt();
+
+            int[] allValue = this.readBitPacked(
+                count, TINArchiveBlock.determineBitWidth(dictionary.length - 1)
+            );
+            for (int i = 0; i < count; i++)
+                allValue[i] = dictionary[allValue[i]];
+
+            return allValue;
+        }
+
+        /**
+         * Reads a frame of reference column: the minimum, the bit width,
+         * then the bit-packed offset of each value from the minimum.
+         * @param count The amount of values.
+         * @return The values.
+         */
+        int[] readFrameOfReferenceColumn(int count) {
+            int min = this.readInt();
+            int[] allValue = this.readBitPacked(count, this.readInt());
+            for (int i = 0; i < count; i++)
+                allValue[i] += min;
+
+            return allValue;
+        }
+
+        /**
+         * Reads bit-packed values, least significant bit first.
+         * @param count The amount of values.
+         * @param bitWidth The amount of bits of each value.
+         * @return The values.
+         */
+        private int[] readBitPacked(int count, int bitWidth) {
+            int[] allValue = new int[count];
+            long buffer = 0;
+            int bufferBits = 0;
+            int mask = (1 << bitWidth) - 1;
+
+            for (int i = 0; i < count && bitWidth > 0; i++) {
+                while (bufferBits < bitWidth) {
+                    buffer |= (long) (this.data[this.position++] & 0xFF)
+                        << bufferBits;
+                    bufferBits += 8;
+                }
+                allValue[i] = (int) buffer & mask;
+                buffer >>>= bitWidth;
+                bufferBits -= bitWidth;
+            }
+
+            return allValue;
+        }
+    }
+}
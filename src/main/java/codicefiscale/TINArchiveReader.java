@@ -0,0 +1,89 @@
+package codicefiscale;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class reads the blocks of an archive written by TINArchiveWriter,
+ * one at a time, so memory is bounded by the block size.
+ *
+ * Blocks are returned still encoded: their statistics can be checked to
+ * skip them, and the others can be decoded on any thread, for example with
+ * a parallel stream over a batch of blocks.
+ *
+ * Instances are not thread-safe.
+ */
+public class TINArchiveReader implements Closeable {
+
+    /**
+     * The stream the archive is read from.
+     */
+    private final DataInputStream input;
+
+    /**
+     * Whether the end of the archive has been read.
+     */
+    private boolean ended;
+
+    /**
+     * Creates a reader and checks the header of the archive.
+     * @param input The stream to read the archive from.
+     * @throws IOException When the stream is not a TIN archive.
+     */
+    public TINArchiveReader(InputStream input) throws IOException {
+        this.input = new DataInputStream(input);
+
+        if (this.input.readInt() != TINArchiveWriter.MAGIC)
+            throw new IOException("The stream is not a TIN archive.");
+
+        int version = this.input.readInt();
+        if (version != TINArchiveWriter.VERSION)
+            throw new IOException(
+                String.format(
+                    "Unsupported TIN archive version %d.", version
+                )
+            );
+    }
+
+    /**
+     * Reads the next block of the archive, without decoding it.
+     * @return The block, or null at the end of the archive.
+     * @throws IOException When the archive cannot be read or is truncated.
+     */
+    public TINArchiveBlock nextBlock() throws IOException {
+        if (this.ended)
+            return null;
+
+        int count = this.input.readInt();
+        if (count == 0) {
+            this.ended = true;
+            return null;
+        }
+
+        int minDateKey = this.input.readInt();
+        int maxDateKey = this.input.readInt();
+        int minPlaceOfBirth = this.input.readInt();
+        int maxPlaceOfBirth = this.input.readInt();
+        byte[] payload = new byte[this.input.readInt()];
+        this.input.readFully(payload);
+
+        return new TINArchiveBlock(
+            count,
+            minDateKey,
+            maxDateKey,
+            minPlaceOfBirth,
+            maxPlaceOfBirth,
+            payload
+        );
+    }
+
+    /**
+     * Closes the stream.
+     * @throws IOException When the stream cannot be closed.
+     */
+    public void close() throws IOException {
+        this.input.close();
+    }
+}
@@ -0,0 +1,368 @@
+package codicefiscale;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * This class writes TIN codes to a block-based columnar archive. Codes are
+ * buffered until a block is full, then the block is encoded as described in
+ * TINArchiveBlock and written, so memory is bounded by the block size.
+ *
+ * The archive starts with a magic number and a version, followed by the
+ * blocks, each with its amount of codes, its statistics and the length of
+ * its payload, and ends with a block of zero codes.
+ *
+ * Only valid codes can be archived: the control char is not stored, so a
+ * wrong one could not be read back. Codes are read back in uppercase.
+ *
+ * Instances are not thread-safe.
+ */
+public class TINArchiveWriter implements Closeable {
+
+    /**
+     * The magic number an archive starts with, "CFA" and a 0 byte.
+     */
+    static final int MAGIC = 0x43464100;
+
+    /**
+     * The version of the archive format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The default amount of codes in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+    /**
+     * The stream the archive is written to.
+     */
+    private final DataOutputStream output;
+
+    /**
+     * The amount of codes in a full block.
+     */
+    private final int blockSize;
+
+    /**
+     * The surname triplet index of each buffered code.
+     */
+    private final int[] allSurname;
+
+    /**
+     * The name triplet index of each buffered code.
+     */
+    private final int[] allName;
+
+    /**
+     * The packed place of birth code of each buffered code.
+     */
+    private final int[] allPlaceOfBirth;
+
+    /**
+     * The date key of each buffered code.
+     */
+    private final int[] allDateKey;
+
+    /**
+     * 1 for each buffered female code, 0 otherwise.
+     */
+    private final int[] allFemale;
+
+    /**
+     * The omocodia letters mask of each buffered code: bit i is set when
+     * the digit at LibTIN.ALL_DIGIT_POSITION[i] is a letter.
+     */
+    private final int[] allOmocodeMask;
+
+    /**
+     * The amount of buffered codes.
+     */
+    private int count;
+
+    /**
+     * Whether the archive has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a writer with the default block size.
+     * @param output The stream to write the archive to.
+     * @throws IOException When the header cannot be written.
+     */
+    public TINArchiveWriter(OutputStream output) throws IOException {
+        this(output, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a writer.
+     * @param output The stream to write the archive to.
+     * @param blockSize The amount of codes in a block.
+     * @throws IOException When the header cannot be written.
+     */
+    public TINArchiveWriter(OutputStream output, int blockSize)
+        throws IOException {
+        if (blockSize < 1)
+            throw new RuntimeException("The block size must be positive.");
+
+        this.output = new DataOutputStream(output);
+        this.blockSize = blockSize;
+        this.allSurname = new int[blockSize];
+        this.allName = new int[blockSize];
+        this.allPlaceOfBirth = new int[blockSize];
+        this.allDateKey = new int[blockSize];
+        this.allFemale = new int[blockSize];
+        this.allOmocodeMask = new int[blockSize];
+
+        this.output.writeInt(MAGIC);
+        this.output.writeInt(VERSION);
+    }
+
+    /**
+     * Writes a TIN.
+     * @param tin The TIN.
+     * @throws IOException When a full block cannot be written.
+     * @throws RuntimeException When the TIN is not valid.
+     */
+    public void write(TIN tin) throws IOException {
+        this.write(tin.getCode());
+    }
+
+    /**
+     * Writes a TIN code.
+     * @param code The TIN code, in any case.
+     * @throws IOException When a full block cannot be written.
+     * @throws RuntimeException When the code is not valid.
+     */
+    public void write(CharSequence code) throws IOException {
+        if (this.closed)
+            throw new RuntimeException("The archive is closed.");
+
+        ParseResult<Void> validation = TIN.validate(code);
+        if (!validation.isValid())
+            throw new RuntimeException(validation.toString());
+
+        int i = this.count;
+        this.allSurname[i] =
+            LibTIN.determineTripletValue(code, LibTIN.SURNAME_START);
+        this.allName[i] =
+            LibTIN.determineTripletValue(code, LibTIN.NAME_START);
+
+        int omocodeMask = 0;
+        for (int j = 0; j < LibTIN.ALL_DIGIT_POSITION.length; j++) {
+            char character = code.charAt(LibTIN.ALL_DIGIT_POSITION[j]);
+            if (character < '0' || character > '9')
+                omocodeMask |= 1 << j;
+        }
+        this.allOmocodeMask[i] = omocodeMask;
+
+        int dayOfBirthGender = LibTIN.determinePairValue(
+            code, LibTIN.DAY_OF_BIRTH_GENDER_START
+        );
+        this.allFemale[i] =
+            dayOfBirthGender > LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS ? 1 : 0;
+        this.allDateKey[i] = TINArchiveBlock.dateKey(
+            LibTIN.determinePairValue(code, LibTIN.YEAR_OF_BIRTH_START),
+            LibTIN.ALL_MONTH_OF_BIRTH_CHAR.indexOf(Character.toUpperCase(
+                code.charAt(LibTIN.MONTH_OF_BIRTH_START)
+            )) + 1,
+            dayOfBirthGender % LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS
+        );
+
+        this.allPlaceOfBirth[i] = LibTIN.determinePlaceOfBirth(code);
+
+        this.count++;
+        if (this.count == this.blockSize)
+            this.flushBlock();
+    }
+
+    /**
+     * Writes the buffered codes as a block, if any, and flushes the stream.
+     * @throws IOException When the block cannot be written.
+     */
+    public void flush() throws IOException {
+        if (this.count > 0)
+            this.flushBlock();
+
+        this.output.flush();
+    }
+
+    /**
+     * Writes the buffered codes and the end of the archive, then closes the
+     * stream.
+     * @throws IOException When the archive cannot be written.
+     */
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.flush();
+        this.output.writeInt(0);
+        this.closed = true;
+        this.output.close();
+    }
+
+    /**
+     * Encodes and writes the buffered codes as a block.
+     * @throws IOException When the block cannot be written.
+     */
+    private void flushBlock() throws IOException {
+        BitWriter writer = new BitWriter(this.count);
+        writer.writeDictionaryColumn(this.allSurname, this.count);
+        writer.writeDictionaryColumn(this.allName, this.count);
+        int[] allPlaceOfBirthDictionary = writer.writeDictionaryColumn(
+            this.allPlaceOfBirth, this.count
+        );
+        int[] dateKeyRange = writer.writeFrameOfReferenceColumn(
+            this.allDateKey, this.count
+        );
+        writer.writeFrameOfReferenceColumn(this.allFemale, this.count);
+        writer.writeFrameOfReferenceColumn(this.allOmocodeMask, this.count);
+
+        this.output.writeInt(this.count);
+        this.output.writeInt(dateKeyRange[0]);
+        this.output.writeInt(dateKeyRange[1]);
+        this.output.writeInt(allPlaceOfBirthDictionary[0]);
+        this.output.writeInt(
+            allPlaceOfBirthDictionary[allPlaceOfBirthDictionary.length - 1]
+        );
+        this.output.writeInt(writer.length);
+        this.output.write(writer.data, 0, writer.length);
+
+        this.count = 0;
+    }
+
+    /**
+     * This class writes the bit-packed columns of a payload.
+     */
+    private static class BitWriter {
+
+        /**
+         * The payload being written.
+         */
+        private byte[] data;
+
+        /**
+         * The amount of bytes written.
+         */
+        private int length;
+
+        /**
+         * Creates a writer of a payload.
+         * @param count The amount of codes, to size the first buffer.
+         */
+        BitWriter(int count) {
+            this.data = new byte[Math.max(64, count * 8)];
+        }
+
+        /**
+         * Writes an int as 4 bytes, big endian.
+         * @param value The int.
+         */
+        void writeInt(int value) {
+            this.ensureCapacity(4);
+            for (int i = 24; i >= 0; i -= 8)
+                this.data[this.length++] = (byte) (value >>> i);
+        }
+
+        /**
+         * Writes a dictionary-encoded column: the sorted distinct values,
+         * then the bit-packed index of each value in the dictionary.
+         * @param allValue The values.
+         * @param count The amount of values.
+         * @return The dictionary.
+         */
+        int[] writeDictionaryColumn(int[] allValue, int count) {
+            int[] allSorted = Arrays.copyOf(allValue, count);
+            Arrays.sort(allSorted);
+
+            int dictionaryLength = 0;
+            for (int i = 0; i < count; i++)
+                if (i == 0 || allSorted[i] != allSorted[i - 1])
+                    allSorted[dictionaryLength++] = allSorted[i];
+            int[] dictionary = Arrays.copyOf(allSorted, dictionaryLength);
+
+            this.writeInt(dictionaryLength);
+            for (int value : dictionary)
+                this.writeInt(value);
+
+            int[] allIndex = new int[count];
+            for (int i = 0; i < count; i++)
+                allIndex[i] = Arrays.binarySearch(dictionary, allValue[i]);
+            this.writeBitPacked(
+                allIndex,
+                count,
+                TINArchiveBlock.determineBitWidth(dictionaryLength - 1)
+            );
+
+            return dictionary;
+        }
+
+        /**
+         * Writes a frame of reference column: the minimum, the bit width,
+         * then the bit-packed offset of each value from the minimum.
+         * @param allValue The values.
+         * @param count The amount of values.
+         * @return The minimum and the maximum of the values.
+         */
+        int[] writeFrameOfReferenceColumn(int[] allValue, int count) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                min = Math.min(min, allValue[i]);
+                max = Math.max(max, allValue[i]);
+            }
+
+            int[] allOffset = new int[count];
+            for (int i = 0; i < count; i++)
+                allOffset[i] = allValue[i] - min;
+
+            int bitWidth = TINArchiveBlock.determineBitWidth(max - min);
+            this.writeInt(min);
+            this.writeInt(bitWidth);
+            this.writeBitPacked(allOffset, count, bitWidth);
+
+            return new int[] {min, max};
+        }
+
+        /**
+         * Writes bit-packed values, least significant bit first.
+         * @param allValue The values.
+         * @param count The amount of values.
+         * @param bitWidth The amount of bits of each value.
+         */
+        private void writeBitPacked(int[] allValue, int count, int bitWidth) {
+            this.ensureCapacity(((long) count * bitWidth + 7) / 8);
+            long buffer = 0;
+            int bufferBits = 0;
+
+            for (int i = 0; i < count && bitWidth > 0; i++) {
+                buffer |= (long) allValue[i] << bufferBits;
+                bufferBits += bitWidth;
+                while (bufferBits >= 8) {
+                    this.data[this.length++] = (byte) buffer;
+                    buffer >>>= 8;
+                    bufferBits -= 8;
+                }
+            }
+
+            if (bufferBits > 0)
+                this.data[this.length++] = (byte) buffer;
+        }
+
+        /**
+         * Grows the payload so that more bytes fit.
+         * @param extra The amount of bytes to be written.
+         */
+        private void ensureCapacity(long extra) {
+            if (this.length + extra > this.data.length)
+                this.data = Arrays.copyOf(
+                    this.data,
+                    (int) Math.max(this.data.length * 2L, this.length + extra)
+                );
+        }
+    }
+}
@@ -0,0 +1,945 @@
+package codicefiscale;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+
+import codicefiscale.Citizen.Gender;
+
+/**
+ * This class runs a bulk encoding or decoding of a text file, one record
+ * per line, that can be stopped at any point and resumed.
+ *
+ * The input is split into numbered chunks of a fixed amount of lines. Each
+ * chunk is processed on a pool of threads and written to its own file in a
+ * work directory, which is synced and then atomically renamed, and the
+ * directory is synced too. Only then the chunk is committed, by appending
+ * its input offset and length, the CRC32 fingerprint of its input and the
+ * CRC32 checksum of its output to a manifest, which is synced too. When all
+ * the chunks are committed, their outputs are joined in order into the
+ * output file.
+ *
+ * A new run reads the manifest of the previous one. When that run did not
+ * complete, its committed chunks are skipped, so the job resumes where it
+ * stopped. In incremental mode, the chunks of a completed run are skipped
+ * too. Either way the input is read again and a chunk is only skipped when
+ * its offset, length and fingerprint have not changed and its output still
+ * matches its checksum, so a crashed run never leaves stale output behind.
+ * Each chunk is joined exactly once, so records are neither lost nor
+ * duplicated, whatever the amount of threads.
+ *
+ * In ENCODE mode each line is "surname;name;yyyy-mm-dd;M or F;place code"
+ * and becomes the TIN calculated by LibTIN.calculateTIN. In DECODE mode
+ * each line is a TIN and becomes "TIN;yyyy-mm-dd;M or F;place code".
+ * Invalid lines become "# " followed by the reason and empty lines stay
+ * empty, so line n of the output is about line n of the input.
+ */
+public class TINBatchJob {
+
+    /**
+     * The name of the manifest in the work directory.
+     */
+    static final String MANIFEST_NAME = "manifest";
+
+    /**
+     * The first line of a manifest, with the version of its format.
+     */
+    private static final String MANIFEST_HEADER = "codicefiscale-job 1";
+
+    /**
+     * The size of the buffers used to read and join files.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The default amount of lines of a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 100000;
+
+    /**
+     * The kind of processing of the job.
+     */
+    private final Mode mode;
+
+    /**
+     * The index used to find the places of birth of ENCODE records.
+     */
+    private final PlaceOfBirthIndex placeOfBirthIndex;
+
+    /**
+     * The amount of lines of a chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * The amount of threads processing chunks.
+     */
+    private final int threadCount;
+
+    /**
+     * Creates a job.
+     * @param mode The kind of processing.
+     * @param placeOfBirthIndex The index of the known places of birth.
+     * @param chunkSize The amount of lines of a chunk.
+     * @param threadCount The amount of threads processing chunks.
+     */
+    public TINBatchJob(
+        Mode mode,
+        PlaceOfBirthIndex placeOfBirthIndex,
+        int chunkSize,
+        int threadCount
+    ) {
+        if (chunkSize < 1 || threadCount < 1)
+            throw new RuntimeException(
+                "The chunk size and the amount of threads must be positive."
+            );
+
+        this.mode = mode;
+        this.placeOfBirthIndex = placeOfBirthIndex;
+        this.chunkSize = chunkSize;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Runs the job, resuming the previous run if it did not complete.
+     * @param input The input file.
+     * @param output The output file, replaced at the end.
+     * @param workDirectory The directory of the chunks and of the manifest,
+     *  which must be kept between runs.
+     * @param incremental Whether to also reuse the unchanged chunks of a
+     *  completed run.
+     * @return The report of the run.
+     * @throws IOException When a file cannot be read or written.
+     */
+    public Report run(
+        Path input, Path output, Path workDirectory, boolean incremental
+    ) throws IOException {
+        Files.createDirectories(workDirectory);
+        Path manifestPath = workDirectory.resolve(MANIFEST_NAME);
+        Manifest previous = Manifest.load(manifestPath, this.getParameters());
+        if (previous.complete && !incremental)
+            previous = new Manifest();
+
+        Manifest manifest = Manifest.create(
+            manifestPath, this.getParameters(), previous
+        );
+        Report report = new Report();
+
+        try {
+            int chunkCount = this.processChunks(
+                input, workDirectory, previous, manifest, report
+            );
+            this.joinChunks(workDirectory, chunkCount, output);
+            manifest.complete(chunkCount);
+        } finally {
+            manifest.close();
+        }
+
+        return report;
+    }
+
+    /**
+     * Processes the chunks of the input that cannot be skipped, on a pool
+     * of threads, and commits them.
+     * @param input The input file.
+     * @param workDirectory The directory of the chunks.
+     * @param previous The manifest of the previous run.
+     * @param manifest The manifest of this run.
+     * @param report The report to add the chunks to.
+     * @return The amount of chunks of the input.
+     * @throws IOException When a file cannot be read or written.
+     */
+    private int processChunks(
+        Path input,
+        Path workDirectory,
+        Manifest previous,
+        Manifest manifest,
+        Report report
+    ) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(
+            this.threadCount
+        );
+        Semaphore inFlight = new Semaphore(this.threadCount * 2);
+        List<Future<?>> allFuture = new ArrayList<>();
+        int chunkCount = 0;
+
+        try (ChunkReader reader = new ChunkReader(input)) {
+            long offset = 0;
+
+            while (true) {
+                int index = chunkCount;
+                Chunk committed = previous.allChunk.get(index);
+
+                byte[] data = reader.readChunk(this.chunkSize);
+                if (data.length == 0)
+                    break;
+
+                long chunkOffset = offset;
+                offset += data.length;
+                chunkCount++;
+                long inputChecksum = TINBatchJob.checksum(data, data.length);
+
+                if (
+                    committed != null
+                    && committed.offset == chunkOffset
+                    && committed.inputLength == data.length
+                    && committed.inputChecksum == inputChecksum
+                    && this.isOutputValid(workDirectory, committed)
+                ) {
+                    report.add(committed, true);
+                    continue;
+                }
+
+                inFlight.acquire();
+                allFuture.add(executor.submit(() -> {
+                    try {
+                        Chunk chunk = this.processChunk(
+                            workDirectory,
+                            index,
+                            chunkOffset,
+                            data,
+                            inputChecksum
+                        );
+                        manifest.commit(chunk);
+                        report.add(chunk, false);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        inFlight.release();
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : allFuture)
+                future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The job has been interrupted.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return chunkCount;
+    }
+
+    /**
+     * Returns the parameters a manifest must match to be reused.
+     * @return The mode and the chunk size.
+     */
+    private String getParameters() {
+        return this.mode + " " + this.chunkSize;
+    }
+
+    /**
+     * Processes a chunk, then syncs and renames its output.
+     * @param workDirectory The directory of the chunks.
+     * @param index The index of the chunk.
+     * @param offset The offset of the chunk in the input.
+     * @param data The bytes of the chunk.
+     * @param inputChecksum The fingerprint of the chunk.
+     * @return The chunk, to be committed.
+     * @throws IOException When the output cannot be written.
+     */
+    private Chunk processChunk(
+        Path workDirectory,
+        int index,
+        long offset,
+        byte[] data,
+        long inputChecksum
+    ) throws IOException {
+        StringBuilder text = new StringBuilder(data.length + data.length / 2);
+        int recordCount = 0;
+        int errorCount = 0;
+
+        try (
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(
+                    new ByteArrayInputStream(data),
+                    StandardCharsets.UTF_8
+                )
+            )
+        ) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    text.append('\n');
+                    continue;
+                }
+
+                String result = this.mode == Mode.ENCODE
+                    ? this.encode(line)
+                    : TINBatchJob.decode(line);
+                if (result.startsWith("#"))
+                    errorCount++;
+                text.append(result).append('\n');
+                recordCount++;
+            }
+        }
+
+        byte[] outputData = text.toString().getBytes(StandardCharsets.UTF_8);
+        Path chunkPath = TINBatchJob.getChunkPath(workDirectory, index);
+        TINBatchJob.writeDurably(chunkPath, outputData);
+
+        return new Chunk(
+            index,
+            offset,
+            data.length,
+            inputChecksum,
+            outputData.length,
+            TINBatchJob.checksum(outputData, outputData.length),
+            recordCount,
+            errorCount
+        );
+    }
+
+    /**
+     * Encodes an ENCODE record.
+     * @param line The record.
+     * @return The TIN, or the reason the record is invalid.
+     */
+    private String encode(String line) {
+        String[] allField = line.split(";", -1);
+        if (allField.length != 5)
+            return "# expected 5 fields, found " + allField.length;
+
+        try {
+            ParseResult<Code> parsedCode = Code.tryParse(allField[4].trim());
+            if (!parsedCode.isValid())
+                return "# invalid place of birth " + parsedCode;
+
+            Code code = parsedCode.getValue();
+            PlaceOfBirth placeOfBirth = this.placeOfBirthIndex.get(
+                code.getPackedCode()
+            );
+            if (placeOfBirth == null)
+                return "# unknown place of birth " + code;
+
+            String gender = allField[3].trim();
+            if (!gender.equals("M") && !gender.equals("F"))
+                return "# invalid gender " + gender;
+
+            Citizen citizen = new Citizen(
+                allField[1].trim(),
+                allField[0].trim(),
+                LocalDate.parse(allField[2].trim()),
+                gender.equals("F") ? Gender.FEMALE : Gender.MALE,
+                placeOfBirth
+            );
+
+            return LibTIN.calculateTIN(citizen).toString();
+        } catch (RuntimeException e) {
+            return "# " + e.getMessage();
+        }
+    }
+
+    /**
+     * Decodes a DECODE record.
+     * @param line The record.
+     * @return The TIN with its date of birth, gender and place of birth, or
+     *  the reason the record is invalid.
+     */
+    private static String decode(String line) {
+        String code = line.trim();
+        ParseResult<TIN> result = TIN.tryParse(code);
+        if (!result.isValid())
+            return "# " + result;
+
+        try {
+            TIN tin = result.getValue();
+            LocalDate dateOfBirth = LibTIN.getDateOfBirth(tin).toInstant()
+                .atZone(ZoneId.systemDefault()).toLocalDate();
+
+            return String.join(
+                ";",
+                tin.toString(),
+                dateOfBirth.toString(),
+                LibTIN.getGender(tin) == Gender.FEMALE ? "F" : "M",
+                Code.ofPacked(LibTIN.determinePlaceOfBirth(code)).toString()
+            );
+        } catch (RuntimeException e) {
+            return "# " + e.getMessage();
+        }
+    }
+
+    /**
+     * Determines whether the output of a committed chunk is still there
+     * and matches its checksum.
+     * @param workDirectory The directory of the chunks.
+     * @param chunk The committed chunk.
+     * @return True if the chunk can be skipped.
+     * @throws IOException When the output cannot be read.
+     */
+    private boolean isOutputValid(Path workDirectory, Chunk chunk)
+        throws IOException {
+        Path chunkPath = TINBatchJob.getChunkPath(workDirectory, chunk.index);
+        if (
+            !Files.isRegularFile(chunkPath)
+            || Files.size(chunkPath) != chunk.outputLength
+        )
+            return false;
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream stream = Files.newInputStream(chunkPath)) {
+            int read;
+            while ((read = stream.read(buffer)) > 0)
+                crc.update(buffer, 0, read);
+        }
+
+        return crc.getValue() == chunk.outputChecksum;
+    }
+
+    /**
+     * Joins the outputs of the chunks, in order, into the output file.
+     * @param workDirectory The directory of the chunks.
+     * @param chunkCount The amount of chunks.
+     * @param output The output file.
+     * @throws IOException When a file cannot be read or written.
+     */
+    private void joinChunks(Path workDirectory, int chunkCount, Path output)
+        throws IOException {
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+
+        try (
+            FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            );
+            OutputStream stream = Channels.newOutputStream(channel)
+        ) {
+            for (int i = 0; i < chunkCount; i++)
+                Files.copy(TINBatchJob.getChunkPath(workDirectory, i), stream);
+            stream.flush();
+            channel.force(true);
+        }
+
+        Files.move(
+            temporary,
+            output,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        TINBatchJob.syncDirectory(output.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Returns the path of the output of a chunk.
+     * @param workDirectory The directory of the chunks.
+     * @param index The index of the chunk.
+     * @return The path of the output of the chunk.
+     */
+    static Path getChunkPath(Path workDirectory, int index) {
+        return workDirectory.resolve(String.format("chunk-%06d", index));
+    }
+
+    /**
+     * Writes a file to a temporary file, syncs it, renames it and syncs its
+     * directory, so that the rename survives a crash.
+     * @param path The file.
+     * @param data The content of the file.
+     * @throws IOException When the file cannot be written.
+     */
+    private static void writeDurably(Path path, byte[] data)
+        throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (
+            FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+
+        Files.move(
+            temporary,
+            path,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        TINBatchJob.syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Syncs a directory, so that the files renamed into it are durable.
+     * Platforms that cannot open a directory, such as Windows, are skipped.
+     * @param directory The directory.
+     * @throws IOException When the directory cannot be synced.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the CRC32 of some bytes.
+     * @param data The bytes.
+     * @param length The amount of bytes.
+     * @return The CRC32.
+     */
+    private static long checksum(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * This class reads an input file a chunk of lines at a time.
+     */
+    private static class ChunkReader implements Closeable {
+
+        /**
+         * The input file.
+         */
+        private final InputStream stream;
+
+        /**
+         * The bytes read and not consumed yet.
+         */
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        /**
+         * The index of the next byte to consume.
+         */
+        private int position;
+
+        /**
+         * The index after the last byte read.
+         */
+        private int limit;
+
+        /**
+         * Opens an input file.
+         * @param path The input file.
+         * @throws IOException When the file cannot be opened.
+         */
+        ChunkReader(Path path) throws IOException {
+            this.stream = Files.newInputStream(path);
+        }
+
+        /**
+         * Reads the lines of the next chunk.
+         * @param lineCount The amount of lines of a chunk.
+         * @return The bytes of the chunk, empty at the end of the input.
+         * @throws IOException When the input cannot be read.
+         */
+        byte[] readChunk(int lineCount) throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+            while (lineCount > 0 && this.fill()) {
+                int end = this.position;
+                while (end < this.limit && lineCount > 0)
+                    if (this.buffer[end++] == '\n')
+                        lineCount--;
+
+                data.write(this.buffer, this.position, end - this.position);
+                this.position = end;
+            }
+
+            return data.toByteArray();
+        }
+
+        /**
+         * Reads more bytes if all the buffered ones have been consumed.
+         * @return False at the end of the input.
+         * @throws IOException When the input cannot be read.
+         */
+        private boolean fill() throws IOException {
+            if (this.position < this.limit)
+                return true;
+
+            this.position = 0;
+            this.limit = Math.max(this.stream.read(this.buffer), 0);
+            return this.limit > 0;
+        }
+
+        /**
+         * Closes the input file.
+         * @throws IOException When the file cannot be closed.
+         */
+        public void close() throws IOException {
+            this.stream.close();
+        }
+    }
+
+    /**
+     * This enum lists the kinds of processing of a job.
+     */
+    public enum Mode {
+        ENCODE,
+        DECODE,
+    }
+
+    /**
+     * This class holds the amounts of chunks and records of a run.
+     * Instances are thread-safe.
+     */
+    public static class Report {
+
+        /**
+         * The amount of chunks processed by the run.
+         */
+        private int processedChunkCount;
+
+        /**
+         * The amount of chunks skipped because already committed.
+         */
+        private int skippedChunkCount;
+
+        /**
+         * The amount of records of all the chunks.
+         */
+        private long recordCount;
+
+        /**
+         * The amount of invalid records of all the chunks.
+         */
+        private long errorCount;
+
+        /**
+         * Adds a chunk to the report.
+         * @param chunk The chunk.
+         * @param skipped Whether the chunk has been skipped.
+         */
+        synchronized void add(Chunk chunk, boolean skipped) {
+            if (skipped)
+                this.skippedChunkCount++;
+            else
+                this.processedChunkCount++;
+
+            this.recordCount += chunk.recordCount;
+            this.errorCount += chunk.errorCount;
+        }
+
+        /**
+         * Returns the amount of chunks processed by the run.
+         * @return The amount of processed chunks.
+         */
+        public synchronized int getProcessedChunkCount() {
+            return this.processedChunkCount;
+        }
+
+        /**
+         * Returns the amount of chunks skipped because already committed.
+         * @return The amount of skipped chunks.
+         */
+        public synchronized int getSkippedChunkCount() {
+            return this.skippedChunkCount;
+        }
+
+        /**
+         * Returns the amount of records in the output.
+         * @return The amount of records, including the invalid ones.
+         */
+        public synchronized long getRecordCount() {
+            return this.recordCount;
+        }
+
+        /**
+         * Returns the amount of invalid records in the output.
+         * @return The amount of records that became an error line.
+         */
+        public synchronized long getErrorCount() {
+            return this.errorCount;
+        }
+    }
+
+    /**
+     * This class is a committed chunk, as written in the manifest.
+     */
+    static class Chunk {
+
+        /**
+         * The index of the chunk.
+         */
+        final int index;
+
+        /**
+         * The offset of the chunk in the input.
+         */
+        final long offset;
+
+        /**
+         * The amount of bytes of the chunk in the input.
+         */
+        final long inputLength;
+
+        /**
+         * The CRC32 of the input of the chunk.
+         */
+        final long inputChecksum;
+
+        /**
+         * The amount of bytes of the output of the chunk.
+         */
+        final long outputLength;
+
+        /**
+         * The CRC32 of the output of the chunk.
+         */
+        final long outputChecksum;
+
+        /**
+         * The amount of records of the chunk.
+         */
+        final int recordCount;
+
+        /**
+         * The amount of invalid records of the chunk.
+         */
+        final int errorCount;
+
+        /**
+         * Creates an instance of a committed chunk.
+         * @param index The index of the chunk.
+         * @param offset The offset of the chunk in the input.
+         * @param inputLength The amount of bytes of the input.
+         * @param inputChecksum The CRC32 of the input.
+         * @param outputLength The amount of bytes of the output.
+         * @param outputChecksum The CRC32 of the output.
+         * @param recordCount The amount of records.
+         * @param errorCount The amount of invalid records.
+         */
+        Chunk(
+            int index,
+            long offset,
+            long inputLength,
+            long inputChecksum,
+            long outputLength,
+            long outputChecksum,
+            int recordCount,
+            int errorCount
+        ) {
+            this.index = index;
+            this.offset = offset;
+            this.inputLength = inputLength;
+            this.inputChecksum = inputChecksum;
+            this.outputLength = outputLength;
+            this.outputChecksum = outputChecksum;
+            this.recordCount = recordCount;
+            this.errorCount = errorCount;
+        }
+
+        /**
+         * Parses a chunk line of a manifest.
+         * @param line The line, without the "chunk " prefix.
+         * @return The chunk.
+         */
+        static Chunk parse(String line) {
+            String[] allField = line.split(" ");
+            return new Chunk(
+                Integer.parseInt(allField[0]),
+                Long.parseLong(allField[1]),
+                Long.parseLong(allField[2]),
+                Long.parseLong(allField[3], 16),
+                Long.parseLong(allField[4]),
+                Long.parseLong(allField[5], 16),
+                Integer.parseInt(allField[6]),
+                Integer.parseInt(allField[7])
+            );
+        }
+
+        /**
+         * Gives the manifest line of a chunk.
+         */
+        public String toString() {
+            return String.format(
+                "chunk %d %d %d %x %d %x %d %d",
+                this.index,
+                this.offset,
+                this.inputLength,
+                this.inputChecksum,
+                this.outputLength,
+                this.outputChecksum,
+                this.recordCount,
+                this.errorCount
+            );
+        }
+    }
+
+    /**
+     * This class is the manifest of a run: a header, then one line per
+     * committed chunk, appended and synced as chunks are committed, then a
+     * line marking the run as complete. A line cut by a crash is ignored.
+     */
+    static class Manifest {
+
+        /**
+         * The committed chunks, by index.
+         */
+        final Map<Integer, Chunk> allChunk = new HashMap<>();
+
+        /**
+         * Whether the run completed.
+         */
+        boolean complete;
+
+        /**
+         * The channel the manifest is appended to, or null.
+         */
+        private FileChannel channel;
+
+        /**
+         * Loads the manifest of a previous run.
+         * @param path The manifest file.
+         * @param parameters The parameters of the job.
+         * @return The manifest, empty if there is none or if it was written
+         *  with other parameters.
+         * @throws IOException When the manifest cannot be read.
+         */
+        static Manifest load(Path path, String parameters)
+            throws IOException {
+            Manifest manifest = new Manifest();
+            List<String> allLine;
+            try {
+                allLine = Files.readAllLines(path, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                return manifest;
+            }
+
+            if (
+                allLine.size() < 2
+                || !allLine.get(0).equals(MANIFEST_HEADER)
+                || !allLine.get(1).equals(parameters)
+            )
+                return manifest;
+
+            for (String line : allLine.subList(2, allLine.size()))
+                try {
+                    if (line.startsWith("chunk ")) {
+                        Chunk chunk = Chunk.parse(line.substring(6));
+                        manifest.allChunk.put(chunk.index, chunk);
+                    } else if (line.startsWith("complete "))
+                        manifest.complete = true;
+                } catch (RuntimeException e) {
+                    // A line cut by a crash, the chunk is not committed.
+                }
+
+            return manifest;
+        }
+
+        /**
+         * Creates the manifest of a new run, which starts with the chunks
+         * committed by the previous one. They are only skipped once their
+         * input has been read again and matches their fingerprint.
+         * @param path The manifest file.
+         * @param parameters The parameters of the job.
+         * @param previous The manifest of the previous run.
+         * @return The manifest, open for appending.
+         * @throws IOException When the manifest cannot be written.
+         */
+        static Manifest create(Path path, String parameters, Manifest previous)
+            throws IOException {
+            StringBuilder text = new StringBuilder();
+            text.append(MANIFEST_HEADER).append('\n');
+            text.append(parameters).append('\n');
+            for (Chunk chunk : previous.allChunk.values())
+                text.append(chunk).append('\n');
+            TINBatchJob.writeDurably(
+                path, text.toString().getBytes(StandardCharsets.UTF_8)
+            );
+
+            Manifest manifest = new Manifest();
+            manifest.allChunk.putAll(previous.allChunk);
+            manifest.channel = FileChannel.open(
+                path, StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            );
+
+            return manifest;
+        }
+
+        /**
+         * Commits a chunk, whose output is already durable.
+         * @param chunk The chunk.
+         * @throws IOException When the manifest cannot be written.
+         */
+        synchronized void commit(Chunk chunk) throws IOException {
+            this.append(chunk.toString());
+            this.allChunk.put(chunk.index, chunk);
+        }
+
+        /**
+         * Marks the run as complete and closes the manifest.
+         * @param chunkCount The amount of chunks of the run.
+         * @throws IOException When the manifest cannot be written.
+         */
+        synchronized void complete(int chunkCount) throws IOException {
+            this.append("complete " + chunkCount);
+            this.complete = true;
+            this.close();
+        }
+
+        /**
+         * Closes the manifest, if still open.
+         * @throws IOException When the manifest cannot be closed.
+         */
+        synchronized void close() throws IOException {
+            if (this.channel.isOpen())
+                this.channel.close();
+        }
+
+        /**
+         * Appends a line to the manifest and syncs it.
+         * @param line The line.
+         * @throws IOException When the manifest cannot be written.
+         */
+        private void append(String line) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(
+                (line + "\n").getBytes(StandardCharsets.UTF_8)
+            );
+            while (buffer.hasRemaining())
+                this.channel.write(buffer);
+            this.channel.force(true);
+        }
+    }
+}
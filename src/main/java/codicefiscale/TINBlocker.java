@@ -0,0 +1,522 @@
+package codicefiscale;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class groups records into blocks of candidate matches for record
+ * linkage, by blocking keys made of two TIN segments, such as the surname
+ * triplet and the date of birth. Two records sharing a key are candidates
+ * even if their other fields have typos.
+ *
+ * Records are identified by a non negative int id, such as their row
+ * number, and are given either as a TIN code or as a Citizen. The segments
+ * of a Citizen are computed by BatchTINEncoder, with the same logic as
+ * LibTIN.calculateTIN, so both kinds of record produce the same keys. Omocodia
+ * letters and case are normalized.
+ *
+ * Each (key, record) pair costs one long. Pairs are spread by key across
+ * partitions, and when too many pairs are buffered all the partitions are
+ * spilled to temporary files. Blocks are emitted one partition at a time,
+ * with partitions processed in parallel, so memory is bounded by the buffer
+ * and by the size of the partitions being processed.
+ *
+ * Blocks larger than the cap are dropped, since comparing all their pairs
+ * would be quadratic and such keys are too common to be selective.
+ *
+ * Instances are not thread-safe while records are added.
+ */
+public class TINBlocker implements Closeable {
+
+    /**
+     * The surname triplet, as a triplet index.
+     */
+    private static final int SURNAME = 0;
+
+    /**
+     * The name triplet, as a triplet index.
+     */
+    private static final int NAME = 1;
+
+    /**
+     * The place of birth, as a packed code.
+     */
+    private static final int PLACE_OF_BIRTH = 2;
+
+    /**
+     * The date of birth without the gender, as a TINArchiveBlock date key.
+     */
+    private static final int DATE_OF_BIRTH = 3;
+
+    /**
+     * The default amount of partitions of each blocking key.
+     */
+    public static final int DEFAULT_PARTITION_COUNT = 64;
+
+    /**
+     * The default amount of pairs buffered before spilling to disk.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_PAIRS = 1 << 22;
+
+    /**
+     * The blocking keys records are grouped by.
+     */
+    private final BlockingKey[] allBlockingKey;
+
+    /**
+     * The largest block that is emitted.
+     */
+    private final int maxBlockSize;
+
+    /**
+     * The amount of partitions of each blocking key.
+     */
+    private final int partitionCount;
+
+    /**
+     * The amount of pairs buffered before spilling to disk.
+     */
+    private final int maxBufferedPairs;
+
+    /**
+     * The buffered pairs of each partition, key in the high int and record
+     * id in the low int. Partition p of blocking key k is at
+     * k.ordinal() * partitionCount + p.
+     */
+    private final long[][] allBuffer;
+
+    /**
+     * The amount of buffered pairs of each partition.
+     */
+    private final int[] allBufferLength;
+
+    /**
+     * The spill file of each partition, or null.
+     */
+    private final File[] allSpillFile;
+
+    /**
+     * The amount of spilled pairs of each partition.
+     */
+    private final int[] allSpillLength;
+
+    /**
+     * The amount of buffered pairs across partitions.
+     */
+    private int bufferedPairs;
+
+    /**
+     * The segments of the record being added, by segment constant.
+     */
+    private final int[] allSegment = new int[4];
+
+    /**
+     * The chars of the Citizen being added.
+     */
+    private final char[] code = new char[LibTIN.CODE_LENGTH];
+
+    /**
+     * Creates a blocker with the default partitioning and buffer.
+     * @param maxBlockSize The largest block that is emitted.
+     * @param allBlockingKey The blocking keys to group records by.
+     */
+    public TINBlocker(int maxBlockSize, BlockingKey... allBlockingKey) {
+        this(
+            maxBlockSize,
+            DEFAULT_PARTITION_COUNT,
+            DEFAULT_MAX_BUFFERED_PAIRS,
+            allBlockingKey
+        );
+    }
+
+    /**
+     * Creates a blocker.
+     * @param maxBlockSize The largest block that is emitted, at least 2.
+     * @param partitionCount The amount of partitions of each blocking key.
+     * @param maxBufferedPairs The amount of pairs buffered before spilling
+     *  to disk.
+     * @param allBlockingKey The blocking keys to group records by.
+     */
+    public TINBlocker(
+        int maxBlockSize,
+        int partitionCount,
+        int maxBufferedPairs,
+        BlockingKey... allBlockingKey
+    ) {
+        if (maxBlockSize < 2)
+            throw new RuntimeException(
+                "The largest block must hold at least two records."
+            );
+        if (partitionCount < 1 || maxBufferedPairs < 1)
+            throw new RuntimeException(
+                "The partitions and the buffer must not be empty."
+            );
+        if (allBlockingKey.length == 0)
+            throw new RuntimeException("At least a blocking key is needed.");
+
+        this.allBlockingKey = allBlockingKey.clone();
+        this.maxBlockSize = maxBlockSize;
+        this.partitionCount = partitionCount;
+        this.maxBufferedPairs = maxBufferedPairs;
+
+        int allPartitionCount = BlockingKey.values().length * partitionCount;
+        this.allBuffer = new long[allPartitionCount][];
+        this.allBufferLength = new int[allPartitionCount];
+        this.allSpillFile = new File[allPartitionCount];
+        this.allSpillLength = new int[allPartitionCount];
+    }
+
+    /**
+     * Adds a record given as a TIN code. Keys whose segments are not valid
+     * in the code are skipped, the control char is not checked.
+     * @param recordId The id of the record, non negative.
+     * @param code The TIN code, in any case.
+     * @throws IOException When the buffer cannot be spilled.
+     */
+    public void add(int recordId, CharSequence code) throws IOException {
+        if (code.length() != LibTIN.CODE_LENGTH)
+            return;
+
+        this.determineSegments(code);
+        this.addSegments(recordId);
+    }
+
+    /**
+     * Adds a record given as a TIN.
+     * @param recordId The id of the record, non negative.
+     * @param tin The TIN.
+     * @throws IOException When the buffer cannot be spilled.
+     */
+    public void add(int recordId, TIN tin) throws IOException {
+        this.add(recordId, tin.getCode());
+    }
+
+    /**
+     * Adds a record given as a Citizen. Keys with the place of birth are
+     * skipped when its code cannot be packed.
+     * @param recordId The id of the record, non negative.
+     * @param citizen The citizen.
+     * @throws IOException When the buffer cannot be spilled.
+     */
+    public void add(int recordId, Citizen citizen) throws IOException {
+        String surname = citizen.getSurname();
+        String name = citizen.getName();
+        int placeOfBirth = citizen.getPlaceOfBirth().getCode().getPackedCode();
+
+        BatchTINEncoder.encodeRow(
+            surname, 0, surname.length(),
+            name, 0, name.length(),
+            (int) citizen.getLocalDateOfBirth().toEpochDay(),
+            (byte) citizen.getGender().ordinal(),
+            placeOfBirth == Code.NOT_PACKED ? 0 : placeOfBirth,
+            this.code,
+            0
+        );
+        this.determineSegments(CharBuffer.wrap(this.code));
+        if (placeOfBirth == Code.NOT_PACKED)
+            this.allSegment[PLACE_OF_BIRTH] = -1;
+        this.addSegments(recordId);
+    }
+
+    /**
+     * Emits the blocks of candidate records, processing partitions in
+     * parallel. Records are only in blocks of at least 2 and at most
+     * maxBlockSize records. Can be called more than once.
+     * @param consumer The consumer of the blocks, called from many threads.
+     * @return The amount of blocks dropped for being larger than the cap.
+     * @throws IOException When a spill file cannot be read.
+     */
+    public long emitBlocks(Consumer<CandidateBlock> consumer)
+        throws IOException {
+        AtomicLong droppedBlockCount = new AtomicLong();
+
+        try {
+            IntStream.range(0, this.allBuffer.length).parallel().forEach(
+                partition -> droppedBlockCount.addAndGet(
+                    this.emitBlocks(partition, consumer)
+                )
+            );
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return droppedBlockCount.get();
+    }
+
+    /**
+     * Deletes the spill files.
+     */
+    public void close() {
+        for (int i = 0; i < this.allSpillFile.length; i++)
+            if (this.allSpillFile[i] != null) {
+                this.allSpillFile[i].delete();
+                this.allSpillFile[i] = null;
+                this.allSpillLength[i] = 0;
+            }
+    }
+
+    /**
+     * Determines the segments of the record being added.
+     * @param code The TIN code, in any case.
+     */
+    private void determineSegments(CharSequence code) {
+        this.allSegment[SURNAME] =
+            LibTIN.determineTripletValue(code, LibTIN.SURNAME_START);
+        this.allSegment[NAME] =
+            LibTIN.determineTripletValue(code, LibTIN.NAME_START);
+        this.allSegment[PLACE_OF_BIRTH] = LibTIN.determinePlaceOfBirth(
+            code
+        );
+        this.allSegment[DATE_OF_BIRTH] = TINBlocker.determineDateOfBirth(
+            code
+        );
+    }
+
+    /**
+     * Buffers a pair for each blocking key of the record being added whose
+     * segments are known.
+     * @param recordId The id of the record.
+     * @throws IOException When the buffer cannot be spilled.
+     */
+    private void addSegments(int recordId) throws IOException {
+        if (recordId < 0)
+            throw new RuntimeException("Record ids must not be negative.");
+
+        for (BlockingKey blockingKey : this.allBlockingKey) {
+            int first = this.allSegment[blockingKey.first];
+            int second = this.allSegment[blockingKey.second];
+            if (first < 0 || second < 0)
+                continue;
+
+            int key = first << 16 | second;
+            int hash = (key * 0x9E3779B9) >>> 16;
+            int partition = blockingKey.ordinal() * this.partitionCount
+                + hash % this.partitionCount;
+
+            long[] buffer = this.allBuffer[partition];
+            int length = this.allBufferLength[partition];
+            if (buffer == null || length == buffer.length)
+                this.allBuffer[partition] = buffer = Arrays.copyOf(
+                    buffer == null ? new long[0] : buffer,
+                    Math.max(16, length * 2)
+                );
+
+            buffer[length] = (long) key << 32 | recordId;
+            this.allBufferLength[partition] = length + 1;
+            this.bufferedPairs++;
+        }
+
+        if (this.bufferedPairs >= this.maxBufferedPairs)
+            this.spill();
+    }
+
+    /**
+     * Appends the buffered pairs of every partition to its spill file, and
+     * empties the buffer.
+     * @throws IOException When a spill file cannot be written.
+     */
+    private void spill() throws IOException {
+        for (int i = 0; i < this.allBuffer.length; i++) {
+            int length = this.allBufferLength[i];
+            if (length == 0)
+                continue;
+
+            if (this.allSpillFile[i] == null) {
+                this.allSpillFile[i] = File.createTempFile("tin-block", null);
+                this.allSpillFile[i].deleteOnExit();
+            }
+
+            try (
+                DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(
+                        new FileOutputStream(this.allSpillFile[i], true)
+                    )
+                )
+            ) {
+                long[] buffer = this.allBuffer[i];
+                for (int j = 0; j < length; j++)
+                    output.writeLong(buffer[j]);
+            }
+
+            this.allSpillLength[i] += length;
+            this.allBuffer[i] = null;
+            this.allBufferLength[i] = 0;
+        }
+
+        this.bufferedPairs = 0;
+    }
+
+    /**
+     * Emits the blocks of a partition.
+     * @param partition The partition.
+     * @param consumer The consumer of the blocks.
+     * @return The amount of blocks dropped for being larger than the cap.
+     */
+    private long emitBlocks(int partition, Consumer<CandidateBlock> consumer) {
+        int spillLength = this.allSpillLength[partition];
+        int bufferLength = this.allBufferLength[partition];
+        long[] allPair = new long[spillLength + bufferLength];
+
+        if (spillLength > 0)
+            try (
+                DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(
+                        new FileInputStream(this.allSpillFile[partition])
+                    )
+                )
+            ) {
+                for (int i = 0; i < spillLength; i++)
+                    allPair[i] = input.readLong();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        if (bufferLength > 0)
+            System.arraycopy(
+                this.allBuffer[partition], 0, allPair, spillLength, bufferLength
+            );
+
+        Arrays.sort(allPair);
+
+        BlockingKey blockingKey =
+            BlockingKey.values()[partition / this.partitionCount];
+        int[] allRecordId = new int[this.maxBlockSize];
+        long droppedBlockCount = 0;
+        int start = 0;
+
+        while (start < allPair.length) {
+            int key = (int) (allPair[start] >>> 32);
+            int size = 0;
+            int end = start;
+
+            for (; end < allPair.length; end++) {
+                long pair = allPair[end];
+                if ((int) (pair >>> 32) != key)
+                    break;
+                if (end > start && pair == allPair[end - 1])
+                    continue;
+                if (size < this.maxBlockSize)
+                    allRecordId[size] = (int) pair;
+                size++;
+            }
+
+            if (size > this.maxBlockSize)
+                droppedBlockCount++;
+            else if (size > 1)
+                consumer.accept(new CandidateBlock(
+                    blockingKey,
+                    blockingKey.toKey(key),
+                    Arrays.copyOf(allRecordId, size)
+                ));
+
+            start = end;
+        }
+
+        return droppedBlockCount;
+    }
+
+    /**
+     * Returns the date of birth of a TIN code, without the gender.
+     * @param code The TIN code.
+     * @return The date key of the date of birth, or -1 if not valid.
+     */
+    private static int determineDateOfBirth(CharSequence code) {
+        int yearOfCentury = LibTIN.determinePairValue(
+            code, LibTIN.YEAR_OF_BIRTH_START
+        );
+        int month = LibTIN.ALL_MONTH_OF_BIRTH_CHAR.indexOf(
+            Character.toUpperCase(code.charAt(LibTIN.MONTH_OF_BIRTH_START))
+        );
+        int dayOfBirthGender = LibTIN.determinePairValue(
+            code, LibTIN.DAY_OF_BIRTH_GENDER_START
+        );
+        int day = dayOfBirthGender % LibTIN.DAY_OF_BIRTH_FEMALE_SURPLUS;
+
+        if (yearOfCentury < 0 || month < 0 || day < 1 || day > 31)
+            return -1;
+
+        return TINArchiveBlock.dateKey(yearOfCentury, month + 1, day);
+    }
+
+    /**
+     * This enum lists the blocking keys, each made of two TIN segments.
+     * The date of birth never comes first, so that a key fits in 31 bits.
+     */
+    public enum BlockingKey {
+        SURNAME_DATE_OF_BIRTH(SURNAME, DATE_OF_BIRTH),
+        NAME_DATE_OF_BIRTH(NAME, DATE_OF_BIRTH),
+        SURNAME_NAME(SURNAME, NAME),
+        SURNAME_PLACE_OF_BIRTH(SURNAME, PLACE_OF_BIRTH),
+        NAME_PLACE_OF_BIRTH(NAME, PLACE_OF_BIRTH),
+        PLACE_OF_BIRTH_DATE_OF_BIRTH(PLACE_OF_BIRTH, DATE_OF_BIRTH);
+
+        /**
+         * The segment in the high bits of the key.
+         */
+        private final int first;
+
+        /**
+         * The segment in the low 16 bits of the key.
+         */
+        private final int second;
+
+        BlockingKey(int first, int second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * Returns the text of a key, as the TIN segments it is made of.
+         * @param key The key.
+         * @return The text of the key.
+         */
+        String toKey(int key) {
+            StringBuilder text = new StringBuilder();
+            BlockingKey.appendSegment(text, this.first, key >>> 16);
+            BlockingKey.appendSegment(text, this.second, key & 0xFFFF);
+
+            return text.toString();
+        }
+
+        /**
+         * Appends a segment as it appears in a TIN code.
+         * @param text The text to append to.
+         * @param segment The segment constant.
+         * @param value The value of the segment.
+         */
+        private static void appendSegment(
+            StringBuilder text, int segment, int value
+        ) {
+            switch (segment) {
+                case SURNAME:
+                case NAME:
+                    text.append((char) ('A' + value / (26 * 26)))
+                        .append((char) ('A' + value / 26 % 26))
+                        .append((char) ('A' + value % 26));
+                    break;
+                case PLACE_OF_BIRTH:
+                    text.append((char) ('A' + value / 1000))
+                        .append(String.format("%03d", value % 1000));
+                    break;
+                default:
+                    int day = value % 32;
+                    int month = value / 32 % 12;
+                    text.append(String.format("%02d", value / 32 / 12))
+                        .append(LibTIN.ALL_MONTH_OF_BIRTH_CHAR.charAt(month))
+                        .append(String.format("%02d", day));
+            }
+        }
+    }
+}
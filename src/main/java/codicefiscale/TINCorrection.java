@@ -0,0 +1,98 @@
+package codicefiscale;
+
+/**
+ * This class is a plausible correction of a mistyped TIN code, suggested by
+ * a TINRepairer: the corrected TIN, the edit that produces it and its cost.
+ *
+ * Instances are immutable and can be shared across threads.
+ */
+public class TINCorrection {
+
+    /**
+     * The corrected TIN.
+     */
+    private final TIN tin;
+
+    /**
+     * The kind of edit that produces the corrected TIN.
+     */
+    private final Kind kind;
+
+    /**
+     * The position of the edited char, the first one for a transposition.
+     */
+    private final int position;
+
+    /**
+     * The cost of the edit, lower is more likely.
+     */
+    private final int cost;
+
+    /**
+     * Creates an instance of a correction.
+     * @param tin The corrected TIN.
+     * @param kind The kind of edit.
+     * @param position The position of the edited char.
+     * @param cost The cost of the edit.
+     */
+    TINCorrection(TIN tin, Kind kind, int position, int cost) {
+        this.tin = tin;
+        this.kind = kind;
+        this.position = position;
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the corrected TIN.
+     * @return The corrected TIN, in uppercase.
+     */
+    public TIN getTIN() {
+        return this.tin;
+    }
+
+    /**
+     * Returns the kind of edit that produces the corrected TIN.
+     * @return The kind of edit.
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the position of the edited char.
+     * @return The 0-based position, the first of the two swapped chars for
+     *  a transposition.
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Returns the cost of the edit, used to rank corrections.
+     * @return The cost, lower is more likely.
+     */
+    public int getCost() {
+        return this.cost;
+    }
+
+    /**
+     * Gives a string representation of a correction.
+     */
+    public String toString() {
+        return String.format(
+            "%s (%s at %d, cost %d)",
+            this.tin,
+            this.kind,
+            this.position,
+            this.cost
+        );
+    }
+
+    /**
+     * This enum lists the kinds of single typo a correction undoes.
+     */
+    public enum Kind {
+        SUBSTITUTION,
+        TRANSPOSITION,
+    }
+}
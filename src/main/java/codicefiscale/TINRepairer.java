@@ -0,0 +1,372 @@
+package codicefiscale;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import codicefiscale.IncrementalTINValidator.Segment;
+import codicefiscale.TINCorrection.Kind;
+
+/**
+ * This class suggests corrections of a TIN code with a single typo: a wrong
+ * char or two swapped adjacent chars.
+ *
+ * Candidates are pruned before they are built. The control char sum of the
+ * code is computed once, and each edit only updates it with the values of
+ * the chars it changes, so most edits are rejected with two additions.
+ * Edits outside the only invalid segment of the code are not tried at all.
+ * The few candidates left are checked by IncrementalTINValidator and their
+ * place of birth is looked up in a PlaceOfBirthIndex.
+ *
+ * Corrections are ranked by cost: a transposition or a substitution of a
+ * look-alike char is cheaper than a substitution of a key next to it on the
+ * keyboard, which is cheaper than any other substitution. Corrections that
+ * keep omocodia letters cost more, since omocodia is rare.
+ *
+ * Instances are immutable and can be shared across threads.
+ */
+public class TINRepairer {
+
+    /**
+     * The chars a TIN code can be made of.
+     */
+    private static final String ALL_CHAR =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    /**
+     * The pairs of chars that look alike.
+     */
+    private static final String[] ALL_LOOK_ALIKE = new String[] {
+        "0O", "0Q", "0D", "OQ", "OD", "1I", "1L", "IL", "2Z", "5S", "6G",
+        "8B", "UV", "MN", "CG", "EF", "PR",
+    };
+
+    /**
+     * The rows of a QWERTY keyboard.
+     */
+    private static final String[] ALL_KEYBOARD_ROW = new String[] {
+        "1234567890", "QWERTYUIOP", "ASDFGHJKL", "ZXCVBNM",
+    };
+
+    /**
+     * The cost of a transposition or of a look-alike substitution.
+     */
+    private static final int COST_LOOK_ALIKE = 1;
+
+    /**
+     * The cost of a substitution of a key next to the right one.
+     */
+    private static final int COST_KEYBOARD = 2;
+
+    /**
+     * The cost of any other substitution.
+     */
+    private static final int COST_OTHER = 3;
+
+    /**
+     * The cost added for each omocodia letter of a correction.
+     */
+    private static final int COST_OMOCODE = 2;
+
+    /**
+     * The cost of a substitution, by index in ALL_CHAR of both chars.
+     */
+    private static final int[][] ALL_SUBSTITUTION_COST =
+        new int[ALL_CHAR.length()][ALL_CHAR.length()];
+
+    static {
+        for (int[] allCost : ALL_SUBSTITUTION_COST)
+            Arrays.fill(allCost, COST_OTHER);
+
+        for (int row = 0; row < ALL_KEYBOARD_ROW.length; row++) {
+            String keys = ALL_KEYBOARD_ROW[row];
+            for (int column = 0; column < keys.length(); column++) {
+                char key = keys.charAt(column);
+                TINRepairer.setCost(key, column - 1, keys, COST_KEYBOARD);
+                if (row + 1 < ALL_KEYBOARD_ROW.length) {
+                    String below = ALL_KEYBOARD_ROW[row + 1];
+                    TINRepairer.setCost(key, column - 1, below, COST_KEYBOARD);
+                    TINRepairer.setCost(key, column, below, COST_KEYBOARD);
+                }
+            }
+        }
+
+        for (String pair : ALL_LOOK_ALIKE)
+            TINRepairer.setCost(pair.charAt(0), 1, pair, COST_LOOK_ALIKE);
+    }
+
+    /**
+     * The order of corrections, cheapest first.
+     */
+    private static final Comparator<TINCorrection> ORDER = Comparator
+        .comparingInt(TINCorrection::getCost)
+        .thenComparingInt(TINCorrection::getPosition)
+        .thenComparing(correction -> correction.getTIN().getCode());
+
+    /**
+     * The index used to check the place of birth of candidates.
+     */
+    private final PlaceOfBirthIndex placeOfBirthIndex;
+
+    /**
+     * Creates a repairer that checks places of birth against an index.
+     * @param placeOfBirthIndex The index of the known places of birth.
+     */
+    public TINRepairer(PlaceOfBirthIndex placeOfBirthIndex) {
+        this.placeOfBirthIndex = placeOfBirthIndex;
+    }
+
+    /**
+     * Suggests the corrections of a TIN code with a single typo.
+     * @param code The TIN code, in any case.
+     * @return The corrections, cheapest first. The list is empty when the
+     *  code is already valid with a known place of birth, when it is not
+     *  16 chars long, or when no single edit makes it valid.
+     */
+    public List<TINCorrection> suggest(CharSequence code) {
+        if (code.length() != LibTIN.CODE_LENGTH)
+            return Collections.emptyList();
+
+        char[] allChar = new char[LibTIN.CODE_LENGTH];
+        int[] allValue = new int[LibTIN.CODE_LENGTH];
+        int sum = 0;
+        for (int i = 0; i < LibTIN.CODE_LENGTH; i++) {
+            allChar[i] = Character.toUpperCase(code.charAt(i));
+            if (i < LibTIN.CONTROL_CHAR_START) {
+                allValue[i] = Math.max(
+                    LibTIN.determineControlValue(allChar[i], i), 0
+                );
+                sum += allValue[i];
+            }
+        }
+
+        IncrementalTINValidator validator = new IncrementalTINValidator();
+        if (this.isPlausible(allChar, validator))
+            return Collections.emptyList();
+
+        validator.reset();
+        for (int i = 0; i < LibTIN.CONTROL_CHAR_START; i++)
+            validator.append(allChar[i]);
+
+        Segment invalidSegment = null;
+        int invalidSegmentCount = 0;
+        for (Segment segment : Segment.values())
+            if (
+                segment != Segment.CONTROL
+                && !validator.isValidSoFar(segment)
+            ) {
+                invalidSegment = segment;
+                invalidSegmentCount++;
+            }
+        if (
+            invalidSegmentCount == 0
+            && !this.placeOfBirthIndex.contains(
+                LibTIN.determinePlaceOfBirth(CharBuffer.wrap(allChar))
+            )
+        ) {
+            invalidSegment = Segment.PLACE_OF_BIRTH;
+            invalidSegmentCount = 1;
+        }
+
+        List<TINCorrection> allCorrection = new ArrayList<>();
+        char controlChar = allChar[LibTIN.CONTROL_CHAR_START];
+
+        if (invalidSegmentCount <= 1) {
+            int from = 0;
+            int to = LibTIN.CONTROL_CHAR_START;
+            if (invalidSegment != null) {
+                from = invalidSegment.getStart();
+                to = Segment.values()[invalidSegment.ordinal() + 1].getStart();
+            }
+
+            for (int i = from; i < to; i++) {
+                int sumWithout = sum - allValue[i];
+                char original = allChar[i];
+
+                for (int j = 0; j < ALL_CHAR.length(); j++) {
+                    char character = ALL_CHAR.charAt(j);
+                    int value = LibTIN.determineControlValue(character, i);
+                    if (
+                        character == original
+                        || value < 0
+                        || TINRepairer.toControlChar(sumWithout + value)
+                            != controlChar
+                    )
+                        continue;
+
+                    allChar[i] = character;
+                    this.addIfPlausible(
+                        allChar,
+                        validator,
+                        Kind.SUBSTITUTION,
+                        i,
+                        TINRepairer.getSubstitutionCost(original, character),
+                        allCorrection
+                    );
+                }
+
+                allChar[i] = original;
+            }
+        }
+
+        if (invalidSegmentCount == 0) {
+            allChar[LibTIN.CONTROL_CHAR_START] = TINRepairer.toControlChar(sum);
+            this.addIfPlausible(
+                allChar,
+                validator,
+                Kind.SUBSTITUTION,
+                LibTIN.CONTROL_CHAR_START,
+                TINRepairer.getSubstitutionCost(
+                    controlChar, allChar[LibTIN.CONTROL_CHAR_START]
+                ),
+                allCorrection
+            );
+            allChar[LibTIN.CONTROL_CHAR_START] = controlChar;
+        }
+
+        for (int i = 0; i < LibTIN.CONTROL_CHAR_START; i++) {
+            char first = allChar[i];
+            char second = allChar[i + 1];
+            if (first == second)
+                continue;
+
+            int swappedSum = sum - allValue[i]
+                + Math.max(LibTIN.determineControlValue(second, i), 0);
+            char swappedControlChar = first;
+            if (i + 1 < LibTIN.CONTROL_CHAR_START) {
+                swappedSum = swappedSum - allValue[i + 1] + Math.max(
+                    LibTIN.determineControlValue(first, i + 1), 0
+                );
+                swappedControlChar = controlChar;
+            }
+            if (TINRepairer.toControlChar(swappedSum) != swappedControlChar)
+                continue;
+
+            allChar[i] = second;
+            allChar[i + 1] = first;
+            this.addIfPlausible(
+                allChar,
+                validator,
+                Kind.TRANSPOSITION,
+                i,
+                COST_LOOK_ALIKE,
+                allCorrection
+            );
+            allChar[i] = first;
+            allChar[i + 1] = second;
+        }
+
+        allCorrection.sort(ORDER);
+        return allCorrection;
+    }
+
+    /**
+     * Adds a candidate to the corrections if it is plausible.
+     * @param allChar The uppercase chars of the candidate.
+     * @param validator The validator to reuse.
+     * @param kind The kind of edit.
+     * @param position The position of the edit.
+     * @param cost The cost of the edit, without omocodia.
+     * @param allCorrection The corrections to add to.
+     */
+    private void addIfPlausible(
+        char[] allChar,
+        IncrementalTINValidator validator,
+        Kind kind,
+        int position,
+        int cost,
+        List<TINCorrection> allCorrection
+    ) {
+        if (!this.isPlausible(allChar, validator))
+            return;
+
+        allCorrection.add(new TINCorrection(
+            new TIN(new String(allChar)),
+            kind,
+            position,
+            cost + TINRepairer.countOmocode(allChar) * COST_OMOCODE
+        ));
+    }
+
+    /**
+     * Determines whether a code is valid and has a known place of birth.
+     * @param allChar The uppercase chars of the code.
+     * @param validator The validator to reuse.
+     * @return True if the code is plausible.
+     */
+    private boolean isPlausible(
+        char[] allChar, IncrementalTINValidator validator
+    ) {
+        validator.reset();
+        for (char character : allChar)
+            if (!validator.append(character))
+                return false;
+
+        return this.placeOfBirthIndex.contains(
+            LibTIN.determinePlaceOfBirth(CharBuffer.wrap(allChar))
+        );
+    }
+
+    /**
+     * Returns the control char of a control char sum.
+     * @param sum The control char sum of the first 15 chars.
+     * @return The uppercase control char.
+     */
+    private static char toControlChar(int sum) {
+        return Character.toUpperCase(LibTIN.determineControlChar(sum));
+    }
+
+    /**
+     * Returns the amount of omocodia letters of a code.
+     * @param allChar The uppercase chars of the code.
+     * @return The amount of letters at digit positions.
+     */
+    private static int countOmocode(char[] allChar) {
+        int count = 0;
+        for (int position : LibTIN.ALL_DIGIT_POSITION)
+            if (allChar[position] < '0' || allChar[position] > '9')
+                count++;
+
+        return count;
+    }
+
+    /**
+     * Returns the cost of typing a char instead of another one.
+     * @param typed The typed uppercase char.
+     * @param intended The intended uppercase char.
+     * @return The cost of the substitution.
+     */
+    private static int getSubstitutionCost(char typed, char intended) {
+        int typedIndex = ALL_CHAR.indexOf(typed);
+        int intendedIndex = ALL_CHAR.indexOf(intended);
+        if (typedIndex < 0 || intendedIndex < 0)
+            return COST_OTHER;
+
+        return ALL_SUBSTITUTION_COST[typedIndex][intendedIndex];
+    }
+
+    /**
+     * Sets the cost of a substitution, both ways, if it is cheaper.
+     * @param key The first char.
+     * @param index The index of the second char in a string, maybe out of
+     *  range.
+     * @param keys The string holding the second char.
+     * @param cost The cost of the substitution.
+     */
+    private static void setCost(char key, int index, String keys, int cost) {
+        if (index < 0 || index >= keys.length())
+            return;
+
+        int first = ALL_CHAR.indexOf(key);
+        int second = ALL_CHAR.indexOf(keys.charAt(index));
+        ALL_SUBSTITUTION_COST[first][second] = Math.min(
+            ALL_SUBSTITUTION_COST[first][second], cost
+        );
+        ALL_SUBSTITUTION_COST[second][first] = Math.min(
+            ALL_SUBSTITUTION_COST[second][first], cost
+        );
+    }
+}
@@ -0,0 +1,412 @@
+package codicefiscale;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import codicefiscale.IncrementalTINValidator.Segment;
+
+/**
+ * This class indexes a dictionary of surnames or names by their TIN triplet,
+ * so that the names that can produce the triplet of a TIN are found with a
+ * single array lookup.
+ *
+ * The names are stored once, one after the other, in a shared char[]. Each of
+ * the 26^3 triplets owns a range of an int[] of name ids, so the index costs
+ * one char per name char plus two ints per name. Duplicate names always
+ * share their triplet, so they are dropped one triplet at a time, by
+ * sorting the ids of the triplet by name in place and comparing adjacent
+ * names, ignoring case as TIN codes do.
+ *
+ * Instances are immutable and can be shared across threads.
+ */
+public class TripletIndex {
+
+    /**
+     * The amount of distinct triplets.
+     */
+    private static final int TRIPLET_COUNT = 26 * 26 * 26;
+
+    /**
+     * The segment of the TIN this index is about (SURNAME or NAME).
+     */
+    private final Segment segment;
+
+    /**
+     * The chars of all the names.
+     */
+    private final char[] nameData;
+
+    /**
+     * The start of each name in nameData, plus the end of the last one.
+     */
+    private final int[] nameOffset;
+
+    /**
+     * The start of the ids of each triplet in allNameId, plus the end.
+     */
+    private final int[] tripletOffset;
+
+    /**
+     * The ids of the names, grouped by triplet.
+     */
+    private final int[] allNameId;
+
+    /**
+     * Creates an instance of a triplet index.
+     * @param segment The segment of the TIN the index is about.
+     * @param nameData The chars of all the names.
+     * @param nameOffset The start of each name, plus the end of the last one.
+     * @param tripletOffset The start of the ids of each triplet, plus the end.
+     * @param allNameId The ids of the names, grouped by triplet.
+     */
+    private TripletIndex(
+        Segment segment,
+        char[] nameData,
+        int[] nameOffset,
+        int[] tripletOffset,
+        int[] allNameId
+    ) {
+        this.segment = segment;
+        this.nameData = nameData;
+        this.nameOffset = nameOffset;
+        this.tripletOffset = tripletOffset;
+        this.allNameId = allNameId;
+    }
+
+    /**
+     * Builds the index of a dictionary. Duplicate names are indexed once.
+     * @param segment Segment.SURNAME for a dictionary of surnames,
+     *  Segment.NAME for a dictionary of names.
+     * @param allName The dictionary.
+     * @return The triplet index of the dictionary.
+     * @throws RuntimeException When the segment is not a triplet.
+     */
+    public static TripletIndex build(
+        Segment segment, Iterable<? extends CharSequence> allName
+    ) {
+        if (segment != Segment.SURNAME && segment != Segment.NAME)
+            throw new RuntimeException(
+                "A triplet index is either about surnames or names."
+            );
+
+        char[] nameData = new char[1024];
+        int[] nameOffset = new int[256];
+        int[] allTriplet = new int[256];
+        char[] triplet = new char[NameNormalizer.TRIPLET_LENGTH];
+        int nameCount = 0;
+        int dataLength = 0;
+
+        for (CharSequence name : allName) {
+            if (nameCount + 1 >= nameOffset.length) {
+                nameOffset = Arrays.copyOf(nameOffset, nameOffset.length * 2);
+                allTriplet = Arrays.copyOf(allTriplet, allTriplet.length * 2);
+            }
+            while (dataLength + name.length() > nameData.length)
+                nameData = Arrays.copyOf(nameData, nameData.length * 2);
+
+            for (int i = 0; i < name.length(); i++)
+                nameData[dataLength + i] = name.charAt(i);
+
+            if (segment == Segment.NAME)
+                NameNormalizer.determineNameTriplet(
+                    name, 0, name.length(), triplet, 0
+                );
+            else
+                NameNormalizer.determineTriplet(
+                    name, 0, name.length(), triplet, 0
+                );
+            allTriplet[nameCount] = (
+                (triplet[0] - 'A') * 26 * 26
+                + (triplet[1] - 'A') * 26
+                + (triplet[2] - 'A')
+            );
+            nameOffset[nameCount] = dataLength;
+            dataLength += name.length();
+            nameCount++;
+        }
+        nameOffset[nameCount] = dataLength;
+
+        int[] tripletOffset = new int[TRIPLET_COUNT + 1];
+        for (int i = 0; i < nameCount; i++)
+            tripletOffset[allTriplet[i] + 1]++;
+        for (int i = 0; i < TRIPLET_COUNT; i++)
+            tripletOffset[i + 1] += tripletOffset[i];
+
+        int[] allNameId = new int[nameCount];
+        int[] allNext = Arrays.copyOf(tripletOffset, TRIPLET_COUNT);
+        for (int i = 0; i < nameCount; i++)
+            allNameId[allNext[allTriplet[i]]++] = i;
+
+        boolean[] allDuplicate = new boolean[nameCount];
+        int duplicateCount = 0;
+        for (int i = 0; i < TRIPLET_COUNT; i++)
+            duplicateCount += TripletIndex.markDuplicates(
+                nameData,
+                nameOffset,
+                allNameId,
+                tripletOffset[i],
+                tripletOffset[i + 1],
+                allDuplicate
+            );
+
+        int uniqueCount = nameCount - duplicateCount;
+        int[] allUniqueId = new int[nameCount];
+        int[] uniqueOffset = new int[uniqueCount + 1];
+        int uniqueLength = 0;
+        for (int i = 0, uniqueId = 0; i < nameCount; i++) {
+            if (allDuplicate[i])
+                continue;
+
+            int length = nameOffset[i + 1] - nameOffset[i];
+            System.arraycopy(
+                nameData, nameOffset[i], nameData, uniqueLength, length
+            );
+            allUniqueId[i] = uniqueId;
+            uniqueOffset[uniqueId++] = uniqueLength;
+            uniqueLength += length;
+        }
+        uniqueOffset[uniqueCount] = uniqueLength;
+
+        int[] uniqueTripletOffset = new int[TRIPLET_COUNT + 1];
+        int[] allUniqueNameId = new int[uniqueCount];
+        for (int i = 0, next = 0; i < TRIPLET_COUNT; i++) {
+            for (int j = tripletOffset[i]; j < tripletOffset[i + 1]; j++)
+                if (!allDuplicate[allNameId[j]])
+                    allUniqueNameId[next++] = allUniqueId[allNameId[j]];
+            uniqueTripletOffset[i + 1] = next;
+        }
+
+        return new TripletIndex(
+            segment,
+            Arrays.copyOf(nameData, uniqueLength),
+            uniqueOffset,
+            uniqueTripletOffset,
+            allUniqueNameId
+        );
+    }
+
+    /**
+     * Marks the duplicates among the names of a triplet: every occurrence
+     * of a name but the first one, ignoring case. The ids of the triplet
+     * are sorted by name in place, then back in ascending order.
+     * @param nameData The chars of all the names.
+     * @param nameOffset The start of each name, plus the end of the last one.
+     * @param allNameId The ids of the names, grouped by triplet, in
+     *  ascending order within a triplet.
+     * @param start The index of the first id of the triplet.
+     * @param end The index after the last id of the triplet.
+     * @param allDuplicate The flags to set, by name id.
+     * @return The amount of duplicates marked.
+     */
+    private static int markDuplicates(
+        char[] nameData,
+        int[] nameOffset,
+        int[] allNameId,
+        int start,
+        int end,
+        boolean[] allDuplicate
+    ) {
+        int count = end - start;
+        if (count < 2)
+            return 0;
+
+        // Heapsort by name then id, which needs no allocation.
+        for (int root = count / 2 - 1; root >= 0; root--)
+            TripletIndex.siftDown(
+                nameData, nameOffset, allNameId, start, root, count
+            );
+        for (int last = count - 1; last > 0; last--) {
+            TripletIndex.swap(allNameId, start, start + last);
+            TripletIndex.siftDown(
+                nameData, nameOffset, allNameId, start, 0, last
+            );
+        }
+
+        int duplicateCount = 0;
+        for (int i = start + 1; i < end; i++)
+            if (
+                TripletIndex.compareNames(
+                    nameData, nameOffset, allNameId[i - 1], allNameId[i]
+                ) == 0
+            ) {
+                allDuplicate[allNameId[i]] = true;
+                duplicateCount++;
+            }
+
+        Arrays.sort(allNameId, start, end);
+        return duplicateCount;
+    }
+
+    /**
+     * Moves an id of a heap down until both its children are lower, by name
+     * then id.
+     * @param nameData The chars of all the names.
+     * @param nameOffset The start of each name, plus the end of the last one.
+     * @param allNameId The ids of the names.
+     * @param start The index of the first id of the heap.
+     * @param root The index in the heap of the id to move.
+     * @param count The amount of ids in the heap.
+     */
+    private static void siftDown(
+        char[] nameData,
+        int[] nameOffset,
+        int[] allNameId,
+        int start,
+        int root,
+        int count
+    ) {
+        while (2 * root + 1 < count) {
+            int child = 2 * root + 1;
+            if (
+                child + 1 < count
+                && TripletIndex.compareIds(
+                    nameData,
+                    nameOffset,
+                    allNameId[start + child],
+                    allNameId[start + child + 1]
+                ) < 0
+            )
+                child++;
+
+            if (
+                TripletIndex.compareIds(
+                    nameData,
+                    nameOffset,
+                    allNameId[start + root],
+                    allNameId[start + child]
+                ) >= 0
+            )
+                return;
+
+            TripletIndex.swap(allNameId, start + root, start + child);
+            root = child;
+        }
+    }
+
+    /**
+     * Compares two names ignoring case, then their ids.
+     * @param nameData The chars of all the names.
+     * @param nameOffset The start of each name, plus the end of the last one.
+     * @param first The id of the first name.
+     * @param second The id of the second name.
+     * @return A negative, zero or positive value as the first name is less
+     *  than, equal to or greater than the second one.
+     */
+    private static int compareIds(
+        char[] nameData, int[] nameOffset, int first, int second
+    ) {
+        int comparison = TripletIndex.compareNames(
+            nameData, nameOffset, first, second
+        );
+        return comparison != 0 ? comparison : Integer.compare(first, second);
+    }
+
+    /**
+     * Compares two names char by char, ignoring case.
+     * @param nameData The chars of all the names.
+     * @param nameOffset The start of each name, plus the end of the last one.
+     * @param first The id of the first name.
+     * @param second The id of the second name.
+     * @return A negative, zero or positive value as the first name is less
+     *  than, equal to or greater than the second one.
+     */
+    private static int compareNames(
+        char[] nameData, int[] nameOffset, int first, int second
+    ) {
+        int firstStart = nameOffset[first];
+        int firstLength = nameOffset[first + 1] - firstStart;
+        int secondStart = nameOffset[second];
+        int secondLength = nameOffset[second + 1] - secondStart;
+
+        for (int i = 0; i < Math.min(firstLength, secondLength); i++) {
+            int comparison = Character.toUpperCase(nameData[firstStart + i])
+                - Character.toUpperCase(nameData[secondStart + i]);
+            if (comparison != 0)
+                return comparison;
+        }
+
+        return firstLength - secondLength;
+    }
+
+    /**
+     * Swaps two ids.
+     * @param allNameId The ids of the names.
+     * @param first The index of the first id.
+     * @param second The index of the second id.
+     */
+    private static void swap(int[] allNameId, int first, int second) {
+        int id = allNameId[first];
+        allNameId[first] = allNameId[second];
+        allNameId[second] = id;
+    }
+
+    /**
+     * Returns the names of the dictionary that produce the triplet of a TIN.
+     * @param tin The TIN code.
+     * @return The candidate names, in dictionary order.
+     */
+    public List<String> candidatesFor(TIN tin) {
+        return this.candidatesFor(tin.getCode(), this.segment.getStart());
+    }
+
+    /**
+     * Returns the names of the dictionary that produce a triplet.
+     * @param triplet The 3 chars triplet.
+     * @return The candidate names, in dictionary order.
+     */
+    public List<String> candidatesFor(CharSequence triplet) {
+        if (triplet.length() != NameNormalizer.TRIPLET_LENGTH)
+            return Collections.emptyList();
+
+        return this.candidatesFor(triplet, 0);
+    }
+
+    /**
+     * Returns the amount of names in the dictionary.
+     * @return The amount of distinct names indexed.
+     */
+    public int size() {
+        return this.nameOffset.length - 1;
+    }
+
+    /**
+     * Returns the names that produce the triplet starting at an offset.
+     * @param code The sequence containing the triplet.
+     * @param offset The index of the first char of the triplet.
+     * @return The candidate names, in dictionary order.
+     */
+    private List<String> candidatesFor(CharSequence code, int offset) {
+        int tripletIndex = LibTIN.determineTripletValue(code, offset);
+        if (tripletIndex < 0)
+            return Collections.emptyList();
+
+        int start = this.tripletOffset[tripletIndex];
+        int end = this.tripletOffset[tripletIndex + 1];
+
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= end - start)
+                    throw new IndexOutOfBoundsException(
+                        String.valueOf(index)
+                    );
+
+                int nameId = TripletIndex.this.allNameId[start + index];
+                int nameStart = TripletIndex.this.nameOffset[nameId];
+
+                return new String(
+                    TripletIndex.this.nameData,
+                    nameStart,
+                    TripletIndex.this.nameOffset[nameId + 1] - nameStart
+                );
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package codicefiscale;
+
+import java.util.Random;
+
+/**
+ * This class measures BatchTINValidator against a loop that checks the
+ * control char of one String at a time. It is not a test: run it with
+ * ./gradlew batchTINValidatorBenchmark.
+ *
+ * The codes are mutations of a valid code, so about one in 26 of them has
+ * a correct control char. Each method is run a few times to warm up, then
+ * the best of the measured runs is printed in nanoseconds per code.
+ */
+public class BatchTINValidatorBenchmark {
+
+    /**
+     * The amount of codes checked by each run.
+     */
+    private static final int CODE_COUNT = 1 << 20;
+
+    /**
+     * The amount of runs of each method, the first half warms up.
+     */
+    private static final int RUN_COUNT = 10;
+
+    /**
+     * Builds the codes and prints the time each method takes.
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        char[] code = "RSSMRA80A01F205X".toCharArray();
+        String[] allCode = new String[CODE_COUNT];
+        byte[] rows = new byte[CODE_COUNT * (LibTIN.CODE_LENGTH + 1)];
+        byte[] columns = new byte[CODE_COUNT * LibTIN.CODE_LENGTH];
+
+        for (int i = 0; i < CODE_COUNT; i++) {
+            code[random.nextInt(LibTIN.CODE_LENGTH)] =
+                (char) ('A' + random.nextInt(26));
+            code[6 + random.nextInt(2)] = (char) ('0' + random.nextInt(10));
+            allCode[i] = new String(code);
+            for (int j = 0; j < LibTIN.CODE_LENGTH; j++) {
+                rows[i * (LibTIN.CODE_LENGTH + 1) + j] = (byte) code[j];
+                columns[j * CODE_COUNT + i] = (byte) code[j];
+            }
+            rows[i * (LibTIN.CODE_LENGTH + 1) + LibTIN.CODE_LENGTH] = '\n';
+        }
+
+        long best = Long.MAX_VALUE;
+        long[] bitmapStrings = null;
+        for (int run = 0; run < RUN_COUNT; run++) {
+            long start = System.nanoTime();
+            bitmapStrings = BatchTINValidatorBenchmark.validateStrings(allCode);
+            best = BatchTINValidatorBenchmark.keepBest(run, start, best);
+        }
+        BatchTINValidatorBenchmark.print("per-String loop", best);
+
+        best = Long.MAX_VALUE;
+        long[] bitmapRows = null;
+        for (int run = 0; run < RUN_COUNT; run++) {
+            long start = System.nanoTime();
+            bitmapRows = BatchTINValidator.validateRows(
+                rows, 0, LibTIN.CODE_LENGTH + 1, CODE_COUNT
+            );
+            best = BatchTINValidatorBenchmark.keepBest(run, start, best);
+        }
+        BatchTINValidatorBenchmark.print("validateRows", best);
+
+        best = Long.MAX_VALUE;
+        long[] bitmapColumns = null;
+        for (int run = 0; run < RUN_COUNT; run++) {
+            long start = System.nanoTime();
+            bitmapColumns = BatchTINValidator.validateColumns(
+                columns, 0, CODE_COUNT
+            );
+            best = BatchTINValidatorBenchmark.keepBest(run, start, best);
+        }
+        BatchTINValidatorBenchmark.print("validateColumns", best);
+
+        int validCount = 0;
+        for (int i = 0; i < CODE_COUNT; i++) {
+            boolean isValid = BatchTINValidator.isValid(bitmapStrings, i);
+            if (
+                isValid != BatchTINValidator.isValid(bitmapRows, i)
+                || isValid != BatchTINValidator.isValid(bitmapColumns, i)
+            )
+                throw new RuntimeException(
+                    "The methods disagree on code " + allCode[i] + "."
+                );
+            if (isValid)
+                validCount++;
+        }
+        System.out.println(
+            validCount + " of " + CODE_COUNT + " codes are valid"
+        );
+    }
+
+    /**
+     * Checks the control char of each code, one String at a time.
+     * @param allCode The codes.
+     * @return The validity bitmap of the codes.
+     */
+    private static long[] validateStrings(String[] allCode) {
+        long[] bitmap = new long[(allCode.length + 63) >>> 6];
+
+        for (int i = 0; i < allCode.length; i++) {
+            String code = allCode[i];
+            int sum = 0;
+            boolean isValid = true;
+            for (int j = 0; j < LibTIN.CONTROL_CHAR_START && isValid; j++) {
+                int value = LibTIN.determineControlValue(code.charAt(j), j);
+                isValid = value >= 0;
+                sum += value;
+            }
+
+            if (
+                isValid
+                && Character.toUpperCase(LibTIN.determineControlChar(sum))
+                    == Character.toUpperCase(
+                        code.charAt(LibTIN.CONTROL_CHAR_START)
+                    )
+            )
+                bitmap[i >>> 6] |= 1L << i;
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Keeps the best time of the measured runs.
+     * @param run The index of the run that just ended.
+     * @param start The start of the run, in nanoseconds.
+     * @param best The best time so far, in nanoseconds.
+     * @return The best time, including the run unless it was a warm up.
+     */
+    private static long keepBest(int run, long start, long best) {
+        long elapsed = System.nanoTime() - start;
+        return run < RUN_COUNT / 2 ? best : Math.min(best, elapsed);
+    }
+
+    /**
+     * Prints the time a method takes per code.
+     * @param method The name of the method.
+     * @param elapsed The time it takes for all codes, in nanoseconds.
+     */
+    private static void print(String method, long elapsed) {
+        System.out.println(String.format(
+            "%-16s %6.1f ns/code", method, (double) elapsed / CODE_COUNT
+        ));
+    }
+}
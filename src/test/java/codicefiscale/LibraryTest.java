@@ -9,12 +9,22 @@ import codicefiscale.Citizen.Gender;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class LibraryTest {
     @Test public void testCalculateTIN() {
@@ -77,10 +87,869 @@ public class LibraryTest {
             placeOfBirthExpected,
             LibTIN.getPlaceOfBirth(tin, allPOB)
         );
+        assertEquals(
+            "The place of birth extraction should work with omocodia.",
+            placeOfBirthExpected,
+            LibTIN.getPlaceOfBirth(new TIN("RSSMRA80A01F2LRX"), allPOB)
+        );
         assertEquals(
             "The gender extraction should work.",
             Gender.MALE,
             LibTIN.getGender(tin)
         );
     }
+
+    @Test public void testCodeInterning() {
+        assertSame(
+            "Interned codes should be shared.",
+            Code.of("F205"),
+            Code.of("F205")
+        );
+        assertEquals(
+            "A constructed code should equal the interned one.",
+            Code.of("F205"),
+            new Code("F205")
+        );
+        assertEquals(
+            "Equal codes should have equal hash codes.",
+            Code.of("F205").hashCode(),
+            new Code("F205").hashCode()
+        );
+        assertEquals(
+            "The packed code should round trip.",
+            Code.of("L725"),
+            Code.ofPacked(Code.of("L725").getPackedCode())
+        );
+        assertNotEquals(
+            "Codes that cannot be packed should still compare by value.",
+            new Code("f205"),
+            new Code("F205")
+        );
+    }
+
+    @Test public void testIncrementalTINValidator() {
+        IncrementalTINValidator validator = new IncrementalTINValidator();
+        for (char character : "rssmra80a01f205".toCharArray())
+            assertTrue(
+                "Each char of a valid code should be accepted.",
+                validator.append(character)
+            );
+        assertEquals(
+            "The expected control char should be known after 15 chars.",
+            'X',
+            validator.getExpectedControlChar()
+        );
+        assertFalse(
+            "A wrong control char should be rejected.",
+            validator.append('Y')
+        );
+        assertEquals(
+            "The error should point at the control char.",
+            15,
+            validator.getFirstErrorPosition()
+        );
+        validator.deleteLast();
+        validator.append('X');
+        assertTrue("The full code should be valid.", validator.isValid());
+
+        validator.reset();
+        for (char character : "RSSMRA80A32".toCharArray())
+            validator.append(character);
+        assertFalse(
+            "An invalid day of birth should be reported.",
+            validator.isValidSoFar(
+                IncrementalTINValidator.Segment.DAY_OF_BIRTH_GENDER
+            )
+        );
+        assertTrue(
+            "The other segments should stay valid.",
+            validator.isValidSoFar(IncrementalTINValidator.Segment.SURNAME)
+        );
+    }
+
+    @Test public void testCalculateTINAccentsAndPunctuation() {
+        Date dateOfBirth = Date.from(
+            LocalDate.of(1980, 1, 1).atStartOfDay(
+                ZoneId.systemDefault()
+            ).toInstant()
+        );
+        PlaceOfBirth placeOfBirth = new City("Milano", new Code("F205"), "MI");
+        Citizen citizen = new Citizen(
+            "Niccol\u00f2", "D'Angelo", dateOfBirth, Gender.MALE, placeOfBirth
+        );
+        assertEquals(
+            "Accents should be folded and apostrophes ignored.",
+            new TIN("DNGNCL80A01F205D"),
+            LibTIN.calculateTIN(citizen)
+        );
+    }
+
+    @Test public void testCalculateTINNameWithManyConsonants() {
+        Date dateOfBirth = Date.from(
+            LocalDate.of(1980, 1, 1).atStartOfDay(
+                ZoneId.systemDefault()
+            ).toInstant()
+        );
+        PlaceOfBirth placeOfBirth = new City("Milano", new Code("F205"), "MI");
+        assertEquals(
+            "A name with four consonants should skip the second one.",
+            "RSSGFR",
+            LibTIN.calculateTIN(new Citizen(
+                "Gianfranco", "Rossi", dateOfBirth, Gender.MALE, placeOfBirth
+            )).getCode().substring(0, 6)
+        );
+        assertEquals(
+            "A surname with four consonants should keep the first three.",
+            "BRNMRA",
+            LibTIN.calculateTIN(new Citizen(
+                "Mario", "Bernardi", dateOfBirth, Gender.MALE, placeOfBirth
+            )).getCode().substring(0, 6)
+        );
+        assertEquals(
+            "A name with three consonants should keep them all.",
+            "RSSMRC",
+            LibTIN.calculateTIN(new Citizen(
+                "Marco", "Rossi", dateOfBirth, Gender.MALE, placeOfBirth
+            )).getCode().substring(0, 6)
+        );
+    }
+
+    @Test public void testCitizenKeepsDateOfBirthInstant() {
+        Date dateOfBirth = Date.from(
+            LocalDate.of(1980, 1, 1).atTime(14, 30).atZone(
+                ZoneId.systemDefault()
+            ).toInstant()
+        );
+        PlaceOfBirth placeOfBirth = new City("Milano", new Code("F205"), "MI");
+        Citizen citizen = new Citizen(
+            "Mario", "Rossi", dateOfBirth, Gender.MALE, placeOfBirth
+        );
+        assertEquals(
+            "The Date a citizen is created with should be given back.",
+            dateOfBirth,
+            citizen.getDateOfBirth()
+        );
+        assertEquals(
+            "Citizens born on the same day should be equal.",
+            new Citizen(
+                "Mario",
+                "Rossi",
+                LocalDate.of(1980, 1, 1),
+                Gender.MALE,
+                placeOfBirth
+            ),
+            citizen
+        );
+    }
+
+    @Test public void testBatchTINValidator() {
+        String[] allCode = new String[] {
+            "RSSMRA80A01F205X", "RSSMRA80A01F205Y", "mrlmtt89c11l725f",
+        };
+        byte[] rows = new byte[allCode.length * 16];
+        byte[] columns = new byte[allCode.length * 16];
+        for (int i = 0; i < allCode.length; i++)
+            for (int j = 0; j < 16; j++) {
+                rows[i * 16 + j] = (byte) allCode[i].charAt(j);
+                columns[j * allCode.length + i] = (byte) allCode[i].charAt(j);
+            }
+
+        long[] bitmapRows = BatchTINValidator.validateRows(
+            rows, 0, 16, allCode.length
+        );
+        long[] bitmapColumns = BatchTINValidator.validateColumns(
+            columns, 0, allCode.length
+        );
+        for (long[] bitmap : new long[][] { bitmapRows, bitmapColumns }) {
+            assertTrue(
+                "A valid code should be flagged valid.",
+                BatchTINValidator.isValid(bitmap, 0)
+            );
+            assertFalse(
+                "A wrong control char should be flagged invalid.",
+                BatchTINValidator.isValid(bitmap, 1)
+            );
+            assertTrue(
+                "Lowercase codes should be accepted.",
+                BatchTINValidator.isValid(bitmap, 2)
+            );
+        }
+    }
+
+    @Test public void testBatchTINEncoder() {
+        char[] codes = new char[2 * LibTIN.CODE_LENGTH];
+        BatchTINEncoder.encode(
+            new CharSequence[] { "Rossi", "Morellato" },
+            new CharSequence[] { "Mario", "Mattia" },
+            new int[] {
+                (int) LocalDate.of(1980, 1, 1).toEpochDay(),
+                (int) LocalDate.of(1989, 3, 11).toEpochDay(),
+            },
+            new byte[] {
+                (byte) Gender.MALE.ordinal(), (byte) Gender.MALE.ordinal(),
+            },
+            new int[] {
+                Code.of("F205").getPackedCode(),
+                Code.of("L725").getPackedCode(),
+            },
+            codes,
+            true
+        );
+        assertEquals(
+            "The batch encoded codes should be correct.",
+            "RSSMRA80A01F205XMRLMTT89C11L725F",
+            new String(codes)
+        );
+
+        char[] codesFromOffsets = new char[2 * LibTIN.CODE_LENGTH];
+        BatchTINEncoder.encode(
+            "RossiMorellato".toCharArray(),
+            new int[] { 0, 5, 14 },
+            "MarioMattia".toCharArray(),
+            new int[] { 0, 5, 11 },
+            new int[] {
+                (int) LocalDate.of(1980, 1, 1).toEpochDay(),
+                (int) LocalDate.of(1989, 3, 11).toEpochDay(),
+            },
+            new byte[] {
+                (byte) Gender.MALE.ordinal(), (byte) Gender.MALE.ordinal(),
+            },
+            new int[] {
+                Code.of("F205").getPackedCode(),
+                Code.of("L725").getPackedCode(),
+            },
+            codesFromOffsets,
+            false
+        );
+        assertArrayEquals(
+            "Offset views should encode like CharSequence columns.",
+            codes,
+            codesFromOffsets
+        );
+    }
+
+    @Test public void testHashCodeConsistentWithEquals() {
+        assertEquals(
+            "TIN hash codes should ignore case.",
+            new TIN("RSSMRA80A01F205X").hashCode(),
+            new TIN("rssmra80a01f205x").hashCode()
+        );
+        assertEquals(
+            "Places of birth with the same code should hash the same.",
+            new City("Milano", new Code("F205"), "MI").hashCode(),
+            new Country("", Code.of("F205")).hashCode()
+        );
+
+        Date dateOfBirth = Date.from(
+            LocalDate.of(1980, 1, 1).atStartOfDay(
+                ZoneId.systemDefault()
+            ).toInstant()
+        );
+        Citizen citizen = new Citizen(
+            "Mario", "Rossi", LocalDate.of(1980, 1, 1), Gender.MALE,
+            new City("Milano", Code.of("F205"), "MI")
+        );
+        Citizen citizenFromDate = new Citizen(
+            "Mario", "Rossi", dateOfBirth, Gender.MALE,
+            new City("Milano", Code.of("F205"), "MI")
+        );
+        assertEquals(
+            "Citizens built from Date and LocalDate should be equal.",
+            citizen,
+            citizenFromDate
+        );
+        assertEquals(
+            "Equal citizens should hash the same.",
+            citizen.hashCode(),
+            citizenFromDate.hashCode()
+        );
+
+        citizen.getDateOfBirth().setTime(0);
+        assertEquals(
+            "The date of birth should not be mutable from outside.",
+            dateOfBirth,
+            citizen.getDateOfBirth()
+        );
+    }
+
+    @Test public void testTripletIndex() {
+        List<String> allSurname = new ArrayList<>();
+        allSurname.add("Rossi");
+        allSurname.add("Russo");
+        allSurname.add("Rosso");
+        allSurname.add("Rossi");
+        allSurname.add("ROSSI");
+        TripletIndex index = TripletIndex.build(
+            IncrementalTINValidator.Segment.SURNAME, allSurname
+        );
+        assertEquals(
+            "Duplicate names should be indexed once, ignoring case.",
+            3,
+            index.size()
+        );
+
+        List<String> candidates = index.candidatesFor(
+            new TIN("RSSMRA80A01F205X")
+        );
+        assertEquals(
+            "All the surnames with the triplet should be candidates.",
+            3,
+            candidates.size()
+        );
+        assertEquals(
+            "Candidates should keep the dictionary order.",
+            "Rossi",
+            candidates.get(0)
+        );
+        assertTrue(
+            "A triplet with no name should have no candidates.",
+            index.candidatesFor("BNC").isEmpty()
+        );
+
+        List<String> allName = new ArrayList<>();
+        allName.add("Gianfranco");
+        allName.add("Giancarlo");
+        allName.add("Gianfranco");
+        allName.add("Mario");
+        TripletIndex nameIndex = TripletIndex.build(
+            IncrementalTINValidator.Segment.NAME, allName
+        );
+        assertEquals(
+            "Duplicate names should be indexed once.", 3, nameIndex.size()
+        );
+        assertEquals(
+            "Names with four consonants should use the name rule.",
+            Collections.singletonList("Gianfranco"),
+            nameIndex.candidatesFor("GFR")
+        );
+        assertEquals(
+            "Names with four consonants should use the name rule.",
+            Collections.singletonList("Giancarlo"),
+            nameIndex.candidatesFor("GCR")
+        );
+        assertEquals(
+            "Names should still be found after a duplicate.",
+            Collections.singletonList("Mario"),
+            nameIndex.candidatesFor(new TIN("RSSMRA80A01F205X"))
+        );
+    }
+
+    @Test public void testReverseTINFemale() {
+        TIN tin = new TIN("RSSMRA80A41F205B");
+        assertEquals(
+            "The gender extraction should work for women.",
+            Gender.FEMALE,
+            LibTIN.getGender(tin)
+        );
+        assertEquals(
+            "The date of birth extraction should work for women.",
+            Date.from(
+                LocalDate.of(1980, 1, 1).atStartOfDay(
+                    ZoneId.systemDefault()
+                ).toInstant()
+            ),
+            LibTIN.getDateOfBirth(tin)
+        );
+    }
+
+    @Test public void testTINAggregator() throws IOException {
+        List<PlaceOfBirth> allPOB = new ArrayList<>();
+        allPOB.add(new City("Milano", Code.of("F205"), "MI"));
+        allPOB.add(new City("Venezia", Code.of("L736"), "VE"));
+        allPOB.add(new Country("Francia", Code.of("Z110")));
+        TINAggregator aggregator = new TINAggregator(
+            new PlaceOfBirthIndex(allPOB)
+        );
+
+        String data = String.join(
+            "\n",
+            "RSSMRA80A01F205X",
+            "RSSMRA80A41F205B",
+            "MRLMTT89C11L725F",
+            "RSSMRA80A01F205Y",
+            ""
+        );
+        TINAggregation aggregation = aggregator.newAggregation();
+        aggregator.aggregate(
+            new ByteArrayInputStream(
+                data.getBytes(StandardCharsets.US_ASCII)
+            ),
+            aggregation
+        );
+        assertEquals(
+            "Valid codes should be counted.", 2, aggregation.getCount()
+        );
+        assertEquals(
+            "Wrong control chars and unknown places should be invalid.",
+            2,
+            aggregation.getInvalidCount()
+        );
+        assertEquals(
+            "Codes should be counted by gender.",
+            1,
+            aggregation.getCountByGender(Gender.FEMALE)
+        );
+        assertEquals(
+            "Codes should be counted by province.",
+            2,
+            aggregation.getCountByProvince("MI")
+        );
+        assertEquals(
+            "Codes should be counted by year of birth.",
+            2,
+            aggregation.getCountByYearOfBirth(1980)
+        );
+        assertEquals(
+            "Codes should be counted by month of birth.",
+            2,
+            aggregation.getCountByMonthOfBirth(1)
+        );
+
+        char[] longLine = new char[200000];
+        Arrays.fill(longLine, 'X');
+        aggregation = aggregator.newAggregation();
+        aggregator.aggregate(
+            new ByteArrayInputStream(
+                (new String(longLine) + "\nRSSMRA80A01F205X")
+                    .getBytes(StandardCharsets.US_ASCII)
+            ),
+            aggregation
+        );
+        assertEquals(
+            "A line longer than the buffer should be invalid once.",
+            1,
+            aggregation.getInvalidCount()
+        );
+        assertEquals(
+            "The line after a long line should be counted.",
+            1,
+            aggregation.getCount()
+        );
+    }
+
+    @Test public void testTINAggregatorOmocode() {
+        List<PlaceOfBirth> allPOB = new ArrayList<>();
+        allPOB.add(new City("Milano", Code.of("F205"), "MI"));
+        TINAggregator aggregator = new TINAggregator(
+            new PlaceOfBirthIndex(allPOB)
+        );
+
+        byte[] data = String.join(
+            "\n", "RSSMRA80A01F20RS", "RSSMRA80A0MFNLRK", "rssmraulalmfnlrd"
+        ).getBytes(StandardCharsets.US_ASCII);
+        TINAggregation aggregation = aggregator.aggregate(
+            data, 0, 17, 3, false
+        );
+        assertEquals(
+            "Omocodic codes should be counted.", 3, aggregation.getCount()
+        );
+        assertEquals(
+            "Omocodic codes should not be invalid.",
+            0,
+            aggregation.getInvalidCount()
+        );
+        assertEquals(
+            "Omocodic places of birth should be joined to their province.",
+            3,
+            aggregation.getCountByProvince("MI")
+        );
+    }
+
+    @Test public void testTryParse() {
+        ParseResult<TIN> tin = TIN.tryParse("RSSMRA80A01F205X");
+        assertTrue("A valid code should be parsed.", tin.isValid());
+        assertEquals(
+            "The parsed TIN should be correct.",
+            new TIN("RSSMRA80A01F205X"),
+            tin.getValue()
+        );
+
+        ParseResult<TIN> tooShort = TIN.tryParse("RSSMRA80A01F205");
+        assertEquals(
+            "A short code should be rejected.",
+            ParseError.INVALID_LENGTH,
+            tooShort.getError()
+        );
+
+        ParseResult<TIN> wrongChar = TIN.tryParse("RSSMRA80Z01F205X");
+        assertEquals(
+            "An invalid char should be rejected.",
+            ParseError.INVALID_CHAR,
+            wrongChar.getError()
+        );
+        assertEquals(
+            "The position of the invalid char should be reported.",
+            8,
+            wrongChar.getErrorPosition()
+        );
+
+        assertEquals(
+            "A wrong control char should be rejected.",
+            ParseError.INVALID_CONTROL_CHAR,
+            TIN.validate("RSSMRA80A01F205Y").getError()
+        );
+        assertSame(
+            "A valid code should validate without allocating a result.",
+            ParseResult.VALID,
+            TIN.validate("rssmra80a01f205x")
+        );
+
+        assertEquals(
+            "A code of the wrong length should be rejected.",
+            ParseError.INVALID_LENGTH,
+            Code.tryParse("F20").getError()
+        );
+        ParseResult<Code> wrongCode = Code.tryParse("F2#5");
+        assertEquals(
+            "A code with an invalid char should be rejected.",
+            ParseError.INVALID_CHAR,
+            wrongCode.getError()
+        );
+        assertEquals(
+            "The position of the invalid char should be reported.",
+            2,
+            wrongCode.getErrorPosition()
+        );
+        assertSame(
+            "An omocodic code should be parsed into the canonical code.",
+            Code.of("F205"),
+            Code.tryParse("f2lr").getValue()
+        );
+        assertEquals(
+            "A province of the wrong length should be rejected.",
+            ParseError.INVALID_PROVINCE,
+            City.tryCreate("Milano", Code.of("F205"), "MIL").getError()
+        );
+    }
+
+    @Test public void testInvalidTINLengthMessage() {
+        try {
+            new TIN("RSSMRA80A01F205");
+            fail("A short code should be rejected.");
+        } catch (RuntimeException e) {
+            assertEquals(
+                "The message should report both lengths.",
+                "The TIN code must be of 16 characters, "
+                + "given code of length 15 instead.",
+                e.getMessage()
+            );
+        }
+    }
+
+    @Test public void testTINArchive() throws IOException {
+        List<TIN> allTIN = new ArrayList<>();
+        for (String prefix : new String[] {
+            "RSSMRA80A01F205",
+            "RSSMRA80A41F205",
+            "BNCLCU99T71Z110",
+            "XXXXXX00E31A001",
+            "RSSMRAUQA0MF2LR",
+            "VRDGPP13S10L736",
+        }) {
+            IncrementalTINValidator validator = new IncrementalTINValidator();
+            for (char character : prefix.toCharArray())
+                validator.append(character);
+            allTIN.add(new TIN(prefix + validator.getExpectedControlChar()));
+        }
+        allTIN.add(new TIN("rssmra80a01f205x"));
+
+        ByteArrayOutputStream output =
+            new ByteArrayOutputStream();
+        try (TINArchiveWriter writer = new TINArchiveWriter(output, 3)) {
+            for (TIN tin : allTIN)
+                writer.write(tin);
+        }
+
+        List<TINArchiveBlock> allBlock = new ArrayList<>();
+        try (
+            TINArchiveReader reader = new TINArchiveReader(
+                new ByteArrayInputStream(output.toByteArray())
+            )
+        ) {
+            TINArchiveBlock block;
+            while ((block = reader.nextBlock()) != null)
+                allBlock.add(block);
+        }
+        assertEquals("Codes should be split in blocks.", 3, allBlock.size());
+
+        List<TIN> allDecoded = new ArrayList<>();
+        allBlock.parallelStream()
+            .map(TINArchiveBlock::decode)
+            .forEachOrdered(allDecoded::addAll);
+        assertEquals("Codes should round-trip.", allTIN, allDecoded);
+        assertEquals(
+            "Omocodia letters should round-trip.",
+            allTIN.get(4).toString(),
+            allDecoded.get(4).getCode()
+        );
+
+        TINArchiveBlock first = allBlock.get(0);
+        assertEquals(
+            "Blocks should keep the smallest date.",
+            TINArchiveBlock.dateKey(80, 1, 1),
+            first.getMinDateKey()
+        );
+        assertEquals(
+            "Blocks should keep the largest date.",
+            TINArchiveBlock.dateKey(99, 12, 31),
+            first.getMaxDateKey()
+        );
+        assertEquals(
+            "Blocks should keep the largest place of birth.",
+            Code.of("Z110").getPackedCode(),
+            first.getMaxPlaceOfBirth()
+        );
+
+        try (
+            TINArchiveWriter writer = new TINArchiveWriter(
+                new ByteArrayOutputStream()
+            )
+        ) {
+            writer.write("RSSMRA80A01F205Y");
+            fail("Codes with a wrong control char should be rejected.");
+        } catch (RuntimeException e) {
+        }
+    }
+
+    @Test public void testTINBlocker() throws IOException {
+        Citizen citizen = new Citizen(
+            "Mario",
+            "Rossi",
+            LocalDate.of(1980, 1, 1),
+            Gender.MALE,
+            new City("Milano", Code.of("F205"), "MI")
+        );
+        List<CandidateBlock> allBlock = Collections.synchronizedList(
+            new ArrayList<>()
+        );
+        long droppedBlockCount;
+
+        try (
+            TINBlocker blocker = new TINBlocker(
+                3,
+                4,
+                2,
+                TINBlocker.BlockingKey.SURNAME_DATE_OF_BIRTH,
+                TINBlocker.BlockingKey.NAME_PLACE_OF_BIRTH
+            )
+        ) {
+            blocker.add(0, new TIN("RSSMRA80A01F205X"));
+            blocker.add(0, "RSSMRA80A01F205X");
+            blocker.add(1, citizen);
+            blocker.add(2, "rssmro80a01l736X");
+            blocker.add(3, "BNCLCU99T71Z110X");
+            blocker.add(4, "VRDMRA75C12F205X");
+            blocker.add(5, "VRDMRA75C12F205X");
+            blocker.add(6, "BNCMRA60A01F205X");
+            droppedBlockCount = blocker.emitBlocks(allBlock::add);
+        }
+
+        allBlock.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+        assertEquals("Shared keys should make blocks.", 2, allBlock.size());
+        assertEquals(
+            "Citizens and typos in other segments should share a block.",
+            "RSS80A01",
+            allBlock.get(0).getKey()
+        );
+        assertArrayEquals(
+            "Blocks should list their records.",
+            new int[] {0, 1, 2},
+            allBlock.get(0).getRecordIds()
+        );
+        assertEquals(
+            "Blocks over the cap should be dropped.", 1, droppedBlockCount
+        );
+    }
+
+    @Test public void testTINRepairer() {
+        List<PlaceOfBirth> allPOB = new ArrayList<>();
+        allPOB.add(new City("Milano", Code.of("F205"), "MI"));
+        TINRepairer repairer = new TINRepairer(new PlaceOfBirthIndex(allPOB));
+        TIN expected = new TIN("RSSMRA80A01F205X");
+
+        assertTrue(
+            "Valid codes should need no correction.",
+            repairer.suggest("RSSMRA80A01F205X").isEmpty()
+        );
+
+        List<TINCorrection> allCorrection =
+            repairer.suggest("RSSMRA80A01F2O5X");
+        assertEquals(
+            "The look-alike substitution should come first.",
+            expected,
+            allCorrection.get(0).getTIN()
+        );
+        assertEquals(
+            "The substitution should be located.",
+            13,
+            allCorrection.get(0).getPosition()
+        );
+
+        boolean foundTransposition = false;
+        for (TINCorrection correction : repairer.suggest("rssmra08a01f205x"))
+            foundTransposition |= correction.getTIN().equals(expected)
+                && correction.getKind() == TINCorrection.Kind.TRANSPOSITION;
+        assertTrue(
+            "Swapped chars should be suggested back.", foundTransposition
+        );
+
+        for (TINCorrection correction : repairer.suggest("RSSMRA80A01F205Y"))
+            assertTrue(
+                "Every correction should be valid.",
+                TIN.validate(correction.getTIN().getCode()).isValid()
+            );
+    }
+
+    @Test public void testTINBatchJob() throws IOException {
+        List<PlaceOfBirth> allPOB = new ArrayList<>();
+        allPOB.add(new City("Milano", Code.of("F205"), "MI"));
+        TINBatchJob job = new TINBatchJob(
+            TINBatchJob.Mode.ENCODE, new PlaceOfBirthIndex(allPOB), 2, 3
+        );
+        Path directory = Files.createTempDirectory("tin-job");
+        try {
+            Path input = directory.resolve("input");
+            Path output = directory.resolve("output");
+            Path work = directory.resolve("work");
+            List<String> allLine = new ArrayList<>();
+            for (int i = 0; i < 9; i++)
+                allLine.add("Rossi;Mario;1980-01-0" + (i + 1) + ";M;F205");
+            allLine.set(4, "Rossi;Mario;1980-01-05;M;Z999");
+            Files.write(input, allLine);
+
+            TINBatchJob.Report report = job.run(input, output, work, false);
+            List<String> allOutput = Files.readAllLines(output);
+            assertEquals("Every record should be output.", 9, allOutput.size());
+            assertEquals(
+                "Records should be encoded in order.",
+                "RSSMRA80A01F205X",
+                allOutput.get(0)
+            );
+            assertTrue(
+                "Invalid records should be reported.",
+                allOutput.get(4).startsWith("# ")
+            );
+            assertEquals(
+                "Chunks should be processed.",
+                5,
+                report.getProcessedChunkCount()
+            );
+
+            Path manifest = work.resolve(TINBatchJob.MANIFEST_NAME);
+            List<String> allManifestLine = Files.readAllLines(manifest);
+            allManifestLine.removeIf(
+                line ->
+                    line.startsWith("complete")
+                    || line.startsWith("chunk 2 ")
+            );
+            Files.write(manifest, allManifestLine);
+            Files.delete(output);
+            report = job.run(input, output, work, false);
+            assertEquals(
+                "A resumed run should only process uncommitted chunks.",
+                1,
+                report.getProcessedChunkCount()
+            );
+            assertEquals(
+                "A resumed run should neither lose nor duplicate records.",
+                allOutput,
+                Files.readAllLines(output)
+            );
+
+            allLine.set(8, "Rossi;Maria;1980-01-09;F;F205");
+            Files.write(input, allLine);
+            report = job.run(input, output, work, true);
+            assertEquals(
+                "An incremental run should only process changed chunks.",
+                1,
+                report.getProcessedChunkCount()
+            );
+            assertEquals(
+                "An incremental run should update the output.",
+                "RSSMRA80A49F205",
+                Files.readAllLines(output).get(8).substring(0, 15)
+            );
+        } finally {
+            LibraryTest.deleteDirectory(directory);
+        }
+    }
+
+    @Test public void testTINBatchJobResumeChangedInput()
+        throws IOException {
+        List<PlaceOfBirth> allPOB = new ArrayList<>();
+        allPOB.add(new City("Milano", Code.of("F205"), "MI"));
+        TINBatchJob job = new TINBatchJob(
+            TINBatchJob.Mode.ENCODE, new PlaceOfBirthIndex(allPOB), 2, 2
+        );
+        Path directory = Files.createTempDirectory("tin-job");
+        try {
+            Path input = directory.resolve("input");
+            Path output = directory.resolve("output");
+            Path work = directory.resolve("work");
+            List<String> allLine = new ArrayList<>();
+            allLine.add("Rossi;Mario;1980-01-01;M;F205");
+            allLine.add("");
+            allLine.add("Bianchi;Anna;1990-05-05;F;F205");
+            allLine.add("Rossi;Mario;1980-01-02;M;F205");
+            allLine.add("Rossi;Mario;1980-01-03;M;F205");
+            Files.write(input, allLine);
+
+            job.run(input, output, work, false);
+            List<String> allOutput = Files.readAllLines(output);
+            assertEquals(
+                "Empty lines should be kept.", allLine.size(), allOutput.size()
+            );
+            assertEquals(
+                "Empty lines should stay empty.", "", allOutput.get(1)
+            );
+            assertEquals(
+                "Line n of the output should be about line n of the input.",
+                "BNCNNA90E45F205R",
+                allOutput.get(2)
+            );
+
+            // An incremental run with a changed input that crashed before
+            // committing anything: the manifest is left without its last line.
+            Path manifest = work.resolve(TINBatchJob.MANIFEST_NAME);
+            List<String> allManifestLine = Files.readAllLines(manifest);
+            allManifestLine.removeIf(line -> line.startsWith("complete"));
+            Files.write(manifest, allManifestLine);
+            allLine.set(2, "Bianchi;Olga;1990-05-05;F;F205");
+            Files.write(input, allLine);
+
+            TINBatchJob.Report report = job.run(input, output, work, false);
+            assertEquals(
+                "A resumed run should process the changed chunk.",
+                1,
+                report.getProcessedChunkCount()
+            );
+            assertEquals(
+                "A resumed run should skip the unchanged chunks.",
+                2,
+                report.getSkippedChunkCount()
+            );
+            assertEquals(
+                "A resumed run should not keep stale output.",
+                "BNCLGO90E45F205Y",
+                Files.readAllLines(output).get(2)
+            );
+        } finally {
+            LibraryTest.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     * @param directory The directory to delete.
+     * @throws IOException When a file cannot be deleted.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        List<Path> allPath = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.forEach(allPath::add);
+        }
+        allPath.sort(Comparator.reverseOrder());
+        for (Path path : allPath)
+            Files.delete(path);
+    }
 }